@@ -0,0 +1,71 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several environments of the same factory initialized and cleaned up at the same time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentEnvironmentsBenchmark {
+
+    @Param({"1", "4", "16"})
+    private int environmentCount;
+
+    @Param({"10"})
+    private int containerCount;
+
+    @Param({"100"})
+    private int latencyMicros;
+
+    private EnvironmentFactory environmentFactory;
+    private List<ContainerConfig> containers;
+
+    @Setup
+    public void setup() {
+        environmentFactory = EnvironmentFactory.withDockerClientWrapper(
+                SimulatedDockerClientWrapper.builder()
+                        .withDefaultLatency(Latency.fixed(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros))))
+                        .build());
+        containers = Containers.of(containerCount);
+    }
+
+    @Benchmark
+    public List<Environment> initializeAndCleanup() {
+        List<CompletableFuture<Environment>> initialized = new ArrayList<>();
+        for (int i = 0; i < environmentCount; i++) {
+            Environment environment = environmentFactory.getWithId("benchmark");
+            environment.setContainers(containers);
+            initialized.add(environment.initializeAsync());
+        }
+        List<CompletableFuture<Environment>> cleaned = new ArrayList<>();
+        for (CompletableFuture<Environment> future : initialized) {
+            cleaned.add(future.join().cleanupAsync());
+        }
+        List<Environment> environments = new ArrayList<>();
+        for (CompletableFuture<Environment> future : cleaned) {
+            environments.add(future.join());
+        }
+        return environments;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Container configs for benchmarks
+ */
+class Containers {
+
+    private Containers() {
+    }
+
+    /**
+     * @return independent containers with an exposed port and a few environment variables
+     */
+    static List<ContainerConfig> of(int count) {
+        List<ContainerConfig> containers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            containers.add(ContainerConfig.builder()
+                    .withName("container" + i)
+                    .withImage("image" + (i % 5))
+                    .withExposedTcpPort(8080)
+                    .addToEnv("INDEX", String.valueOf(i))
+                    .addToEnv("MODE", "benchmark")
+                    .build());
+        }
+        return containers;
+    }
+}
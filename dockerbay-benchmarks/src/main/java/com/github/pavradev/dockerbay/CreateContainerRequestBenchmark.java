@@ -0,0 +1,62 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the request of one container in an environment with many containers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateContainerRequestBenchmark {
+
+    @Param({"1", "10", "200"})
+    private int containerCount;
+
+    private List<String> links;
+    private Map<String, String> envVariables;
+
+    @Setup
+    public void setup() {
+        links = new ArrayList<>();
+        for (int i = 0; i < containerCount; i++) {
+            links.add(String.format("benchmark-container%d:container%d", i, i));
+        }
+        envVariables = new HashMap<>();
+        envVariables.put("INDEX", "1");
+        envVariables.put("MODE", "benchmark");
+    }
+
+    @Benchmark
+    public CreateContainerRequest build() {
+        return CreateContainerRequest.builder()
+                .withName("benchmark-container1")
+                .withAlias("container1")
+                .fromImage("image")
+                .inNetwork("benchmark")
+                .withLabel(Environment.ENVIRONMENT_LABEL, "benchmark")
+                .withLinks(links)
+                .withExposedPort(8080)
+                .withEnvVariables(envVariables)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DockerRule around an empty test method
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DockerRuleBenchmark {
+
+    private static final Statement EMPTY_TEST = new Statement() {
+        @Override
+        public void evaluate() {
+        }
+    };
+
+    @Param({"1", "10", "50"})
+    private int containerCount;
+
+    private DockerRule dockerRule;
+    private Description description;
+
+    @Setup
+    public void setup() {
+        DockerRule.DockerRuleBuilder builder = DockerRule.builder()
+                .withEnvironmentFactory(EnvironmentFactory.withDockerClientWrapper(SimulatedDockerClientWrapper.builder().build()));
+        Containers.of(containerCount).forEach(builder::addContainer);
+        dockerRule = builder.build();
+        description = Description.createTestDescription(DockerRuleBenchmark.class, "emptyTest");
+    }
+
+    @Benchmark
+    public void applyAndEvaluate() throws Throwable {
+        dockerRule.apply(EMPTY_TEST, description).evaluate();
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Environment.initialize and cleanup of one environment
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    private int containerCount;
+
+    @Param({"0", "100"})
+    private int latencyMicros;
+
+    @Param({"GRACEFUL", "FORCE"})
+    private Environment.CleanupMode cleanupMode;
+
+    private EnvironmentFactory environmentFactory;
+    private List<ContainerConfig> containers;
+
+    @Setup
+    public void setup() {
+        environmentFactory = EnvironmentFactory.withDockerClientWrapper(
+                SimulatedDockerClientWrapper.builder()
+                        .withDefaultLatency(Latency.fixed(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros))))
+                        .build());
+        environmentFactory.setCleanupMode(cleanupMode);
+        containers = Containers.of(containerCount);
+    }
+
+    @Benchmark
+    public Environment initializeAndCleanup() {
+        Environment environment = environmentFactory.getWithId("benchmark");
+        environment.setContainers(containers);
+        environment.initialize();
+        environment.cleanup();
+        return environment;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admits environments to start only when the CPU and memory limits declared by their containers fit in a host budget,
+ * so that parallel environments do not oversubscribe the host and time out together.
+ * Environments are admitted in arrival order, a large one is not overtaken by smaller ones forever.
+ * An environment larger than the whole budget is admitted once nothing else runs.
+ * Containers without limits are not counted, neither are the containers a ContainerPool warms up in the background:
+ * they run outside of any environment until leased, so a large pool can still oversubscribe the host.
+ */
+public class AdmissionScheduler {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionScheduler.class);
+
+    private static final Admission NOTHING = new Admission(null, 0, 0);
+
+    private final double cpuBudget;
+    private final long memoryBudgetMb;
+
+    //guarded by this
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private double usedCpus;
+    private long usedMemoryMb;
+    private int admitted;
+
+    /**
+     * Resources held by an admitted environment until it is closed
+     */
+    public static class Admission implements Closeable {
+        private final AdmissionScheduler scheduler;
+        private final double cpus;
+        private final long memoryMb;
+        private boolean closed;
+
+        private Admission(AdmissionScheduler scheduler, double cpus, long memoryMb) {
+            this.scheduler = scheduler;
+            this.cpus = cpus;
+            this.memoryMb = memoryMb;
+        }
+
+        /**
+         * Gives the resources back, can be called more than once
+         */
+        @Override
+        public void close() {
+            if (scheduler == null) {
+                return;
+            }
+            synchronized (scheduler) {
+                if (!closed) {
+                    closed = true;
+                    scheduler.release(cpus, memoryMb);
+                }
+            }
+        }
+    }
+
+    private AdmissionScheduler(double cpuBudget, long memoryBudgetMb) {
+        this.cpuBudget = cpuBudget;
+        this.memoryBudgetMb = memoryBudgetMb;
+    }
+
+    /**
+     * @param cpus number of CPUs the environments may use together, null for no CPU budget
+     * @param memoryMb megabytes of memory the environments may use together, null for no memory budget
+     */
+    public static AdmissionScheduler withBudget(Double cpus, Integer memoryMb) {
+        if ((cpus != null && cpus <= 0) || (memoryMb != null && memoryMb <= 0)) {
+            throw new IllegalArgumentException("Budget must be positive");
+        }
+        return new AdmissionScheduler(cpus != null ? cpus : Double.MAX_VALUE, memoryMb != null ? memoryMb : Long.MAX_VALUE);
+    }
+
+    /**
+     * Budget of the CPUs available to this JVM and a memory budget
+     */
+    public static AdmissionScheduler forAvailableProcessors(Integer memoryMb) {
+        return withBudget((double) Runtime.getRuntime().availableProcessors(), memoryMb);
+    }
+
+    /**
+     * Blocks until the resources fit in the budget and all the environments that came before are admitted
+     */
+    Admission admit(String environmentName, double cpus, long memoryMb) throws InterruptedException {
+        if (cpus <= 0 && memoryMb <= 0) {
+            return NOTHING;
+        }
+        Object ticket = new Object();
+        synchronized (this) {
+            queue.add(ticket);
+            try {
+                while (queue.peek() != ticket || !fits(cpus, memoryMb)) {
+                    log.debug("Environment {} waits for {} CPUs and {} MB", environmentName, cpus, memoryMb);
+                    wait();
+                }
+            } finally {
+                queue.remove(ticket);
+                //the next environment in the queue may fit as well, or be first now
+                notifyAll();
+            }
+            usedCpus += cpus;
+            usedMemoryMb += memoryMb;
+            admitted++;
+        }
+        return new Admission(this, cpus, memoryMb);
+    }
+
+    /**
+     * @return number of environments waiting for admission
+     */
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    private boolean fits(double cpus, long memoryMb) {
+        if (admitted == 0) {
+            return true;
+        }
+        //CPUs are fractions, a rounding error must not keep an environment waiting
+        return usedCpus + cpus <= cpuBudget + 1e-9 && usedMemoryMb + memoryMb <= memoryBudgetMb;
+    }
+
+    private void release(double cpus, long memoryMb) {
+        usedCpus -= cpus;
+        usedMemoryMb -= memoryMb;
+        admitted--;
+        if (admitted == 0) {
+            usedCpus = 0;
+        }
+        notifyAll();
+    }
+}
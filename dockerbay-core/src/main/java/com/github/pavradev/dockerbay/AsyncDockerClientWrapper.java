@@ -0,0 +1,70 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking companion of DockerClientWrapper: every call returns at once and completes the future when docker is done.
+ * Implementations backed by a client with asynchronous I/O, such as AsyncDockerClientImpl of dockerbay-docker-client,
+ * hold no thread while waiting for docker.
+ */
+public interface AsyncDockerClientWrapper {
+
+    /**
+     * Runs the calls of a blocking wrapper on the executor, each call holds one of its threads until docker is done
+     */
+    static AsyncDockerClientWrapper of(DockerClientWrapper dockerClient, Executor executor) {
+        return new ExecutorAsyncDockerClientWrapper(dockerClient, executor);
+    }
+
+    CompletableFuture<Void> createContainer(CreateContainerRequest containerConfig);
+
+    CompletableFuture<Void> startContainer(String containerName);
+
+    CompletableFuture<Void> stopContainer(String containerName);
+
+    CompletableFuture<Void> removeContainer(String containerName);
+
+    CompletableFuture<List<String>> forceRemoveContainers(String labelName, String labelValue);
+
+    CompletableFuture<Map<Integer, Integer>> getPortMappings(String containerName);
+
+    CompletableFuture<List<ContainerState>> listContainers(String labelName, String labelValue);
+
+    CompletableFuture<List<ContainerState>> listContainers(String labelName);
+
+    CompletableFuture<String> getContainerLogs(String containerName);
+
+    CompletableFuture<Void> streamContainerLogs(String containerName, LogListener listener);
+
+    CompletableFuture<Closeable> followContainerLogs(String containerName, LogListener listener);
+
+    CompletableFuture<Closeable> subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener);
+
+    CompletableFuture<Void> createNetwork(String networkName);
+
+    CompletableFuture<Void> deleteNetwork(String networkName);
+
+    CompletableFuture<List<String>> listNetworks(String namePart);
+
+    CompletableFuture<Map<String, Map<String, String>>> listLabeledNetworks(String labelName);
+
+    CompletableFuture<Void> connectToNetwork(String containerName, String networkName, String alias);
+
+    CompletableFuture<Void> pullImage(String imageName);
+
+    CompletableFuture<Boolean> isImagePresent(String imageName);
+
+    CompletableFuture<String> getImageId(String imageName);
+
+    CompletableFuture<Void> commitContainer(String containerName, String repository, String tag);
+
+    CompletableFuture<Map<String, Instant>> listImages(String repository);
+
+    CompletableFuture<Void> removeImage(String imageName);
+}
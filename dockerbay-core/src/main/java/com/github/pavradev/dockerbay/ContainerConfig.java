@@ -1,14 +1,29 @@
 package com.github.pavradev.dockerbay;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Container configuration that is environment independent
  */
 public class ContainerConfig {
     public static final int DEFAULT_TIMEOUT_SEC = 60;
+    public static final int DEFAULT_PROBE_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_LOG_TAIL_BYTES = 64 * 1024;
+    public static final int DEFAULT_LOG_TAIL_LINES = 500;
+    /**
+     * Docker rejects a CPU quota under 1ms per 100ms period
+     */
+    public static final double MIN_CPU_LIMIT = 0.01;
 
     private String name;
     private String image;
@@ -16,11 +31,28 @@ public class ContainerConfig {
     private List<String> cmd;
     private Integer exposedPort;
     private Map<String, String> envVariables = new HashMap<>();
+    private Map<String, String> tmpfs = new LinkedHashMap<>();
+    private List<String> binds = new ArrayList<>();
+    private Double cpuLimit;
+    private Integer memoryLimitMb;
 
     private Boolean displayLogs = false;
+    private Integer logTailBytes = DEFAULT_LOG_TAIL_BYTES;
+    private Integer logTailLines = DEFAULT_LOG_TAIL_LINES;
+    private Path logDirectory;
     private String waitForLogEntry;
     private String waitForUrl;
+    private HttpProbe httpProbe = HttpProbe.defaultProbe();
+    private Boolean waitForPort = false;
+    private TcpHandshake tcpHandshake;
     private Integer timeoutSec = DEFAULT_TIMEOUT_SEC;
+    private Integer probeTimeoutMillis = DEFAULT_PROBE_TIMEOUT_MILLIS;
+    private PollStrategy pollStrategy = PollStrategy.fastStart();
+
+    private Set<String> dependencies = new LinkedHashSet<>();
+    private Boolean pooled = false;
+    private Boolean snapshot = false;
+    private Boolean lazy = false;
 
     private ContainerConfig() {
     }
@@ -45,10 +77,56 @@ public class ContainerConfig {
         return envVariables;
     }
 
+    /**
+     * tmpfs mounts: container path to mount options, for instance "size=512m"
+     */
+    public Map<String, String> getTmpfs() {
+        return tmpfs;
+    }
+
+    /**
+     * Bind mounts and named volumes in docker format, "source:containerPath" or "source:containerPath:ro"
+     */
+    public List<String> getBinds() {
+        return binds;
+    }
+
+    /**
+     * Number of CPUs the container may use, null for no limit
+     */
+    public Double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    /**
+     * Memory the container may use in megabytes, null for no limit
+     */
+    public Integer getMemoryLimitMb() {
+        return memoryLimitMb;
+    }
+
     public Boolean getDisplayLogs() {
         return displayLogs;
     }
 
+    /**
+     * Maximum size of the log tail that is kept in memory, for instance to be displayed
+     */
+    public Integer getLogTailBytes() {
+        return logTailBytes;
+    }
+
+    public Integer getLogTailLines() {
+        return logTailLines;
+    }
+
+    /**
+     * Directory where the full log is written before the container is removed, null to keep no full log
+     */
+    public Path getLogDirectory() {
+        return logDirectory;
+    }
+
     public String getWaitForLogEntry() {
         return waitForLogEntry;
     }
@@ -57,10 +135,102 @@ public class ContainerConfig {
         return waitForUrl;
     }
 
+    /**
+     * @return how waitForUrl is probed
+     */
+    public HttpProbe getHttpProbe() {
+        return httpProbe;
+    }
+
+    /**
+     * True if the container is ready only once its exposed port accepts TCP connections
+     */
+    public Boolean getWaitForPort() {
+        return waitForPort;
+    }
+
+    /**
+     * @return protocol check made on the port, null if an accepted connection is enough
+     */
+    public TcpHandshake getTcpHandshake() {
+        return tcpHandshake;
+    }
+
     public Integer getTimeoutSec() {
         return timeoutSec;
     }
 
+    /**
+     * Maximum duration of a single readiness probe, for instance an HTTP call
+     */
+    public Integer getProbeTimeoutMillis() {
+        return probeTimeoutMillis;
+    }
+
+    public PollStrategy getPollStrategy() {
+        return pollStrategy;
+    }
+
+    /**
+     * Names of the containers that must be ready before this one is started
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * True if the container may be leased from a ContainerPool instead of being created for the environment
+     */
+    public Boolean getPooled() {
+        return pooled;
+    }
+
+    /**
+     * True if the container is committed to a local image once it is ready for the first time,
+     * so that next environments start from that image and skip the initialization
+     */
+    public Boolean getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * True if the container is created and started only when a test first asks for it,
+     * through Environment.getAllocatedPort or Environment.ensureStarted.
+     * A lazy container that an eager one depends on is started with the environment anyway.
+     */
+    public Boolean getLazy() {
+        return lazy;
+    }
+
+    /**
+     * Stable identity of the container runtime: image, cmd, environment variables and exposed port.
+     * Containers with the same fingerprint are interchangeable, whatever their names and readiness settings are.
+     */
+    public String getFingerprint() {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("image=").append(image).append('\n');
+        canonical.append("cmd=");
+        if (cmd != null) {
+            cmd.forEach(arg -> canonical.append(arg.length()).append(':').append(arg));
+        }
+        canonical.append('\n');
+        canonical.append("env=");
+        new TreeMap<>(envVariables).forEach((key, value) -> canonical
+                .append(key.length()).append(':').append(key)
+                .append(String.valueOf(value).length()).append(':').append(value));
+        canonical.append('\n');
+        canonical.append("port=").append(exposedPort);
+        //mounts are appended only if any, fingerprints of containers without mounts are unchanged
+        if (!tmpfs.isEmpty() || !binds.isEmpty()) {
+            canonical.append('\n').append("tmpfs=").append(tmpfs);
+            canonical.append('\n').append("binds=").append(binds);
+        }
+        if (cpuLimit != null || memoryLimitMb != null) {
+            canonical.append('\n').append("limits=").append(cpuLimit).append(',').append(memoryLimitMb);
+        }
+        return Digests.sha256Hex(canonical.toString());
+    }
+
     public static ContainerConfigBuilder builder() {
         return new ContainerConfigBuilder();
     }
@@ -97,11 +267,92 @@ public class ContainerConfig {
             return this;
         }
 
+        /**
+         * Mounts an in-memory filesystem, e.g. on the data directory of a database: fsync costs nothing there.
+         * Its content is lost with the container and is not part of snapshots.
+         */
+        public ContainerConfigBuilder withTmpfs(String containerPath) {
+            container.tmpfs.put(containerPath, "");
+            return this;
+        }
+
+        /**
+         * @param size maximum size in docker format, for instance "512m"
+         */
+        public ContainerConfigBuilder withTmpfs(String containerPath, String size) {
+            container.tmpfs.put(containerPath, "size=" + size);
+            return this;
+        }
+
+        /**
+         * Mounts a host directory or file, read-write when readOnly is null
+         */
+        public ContainerConfigBuilder withBindMount(Path hostPath, String containerPath, Boolean readOnly) {
+            String bind = hostPath.toAbsolutePath() + ":" + containerPath;
+            container.binds.add(Boolean.TRUE.equals(readOnly) ? bind + ":ro" : bind);
+            return this;
+        }
+
+        /**
+         * Mounts a named volume, which docker creates if it does not exist and keeps after the container is removed.
+         * The name is not scoped to the environment: parallel environments, pooled containers and other forks mounting it
+         * all write to the same volume, so it must not hold the data of a database or other state a test relies on,
+         * use withTmpfs for that. Suited to read-mostly content such as a dependency cache.
+         */
+        public ContainerConfigBuilder withVolume(String volumeName, String containerPath) {
+            if (volumeName == null || !volumeName.matches("[a-zA-Z0-9][a-zA-Z0-9_.-]+")) {
+                throw new IllegalArgumentException("Invalid volume name " + volumeName);
+            }
+            container.binds.add(volumeName + ":" + containerPath);
+            return this;
+        }
+
+        /**
+         * Limits the container to a number of CPUs, for instance 0.5, at least MIN_CPU_LIMIT. Counted by the AdmissionScheduler.
+         */
+        public ContainerConfigBuilder withCpuLimit(Double cpus) {
+            container.cpuLimit = cpus;
+            return this;
+        }
+
+        /**
+         * Limits the container memory, it is killed when it uses more. Counted by the AdmissionScheduler.
+         */
+        public ContainerConfigBuilder withMemoryLimitMb(Integer memoryMb) {
+            container.memoryLimitMb = memoryMb;
+            return this;
+        }
+
         public ContainerConfigBuilder waitForUrl(String url) {
             container.waitForUrl = url;
             return this;
         }
 
+        public ContainerConfigBuilder waitForUrl(String url, HttpProbe httpProbe) {
+            container.waitForUrl = url;
+            container.httpProbe = httpProbe;
+            return this;
+        }
+
+        /**
+         * Waits until the exposed port accepts TCP connections. Docker proxies published ports, so without a handshake
+         * the wait may end as soon as docker-proxy accepts the connection, even if the service inside does not listen yet.
+         */
+        public ContainerConfigBuilder waitForPort(Boolean waitForPort) {
+            container.waitForPort = waitForPort;
+            return this;
+        }
+
+        /**
+         * Docker proxies published ports, so a connection may be accepted before the process in the container listens.
+         * A handshake makes sure the actual server answers.
+         */
+        public ContainerConfigBuilder waitForPort(TcpHandshake tcpHandshake) {
+            container.waitForPort = true;
+            container.tcpHandshake = tcpHandshake;
+            return this;
+        }
+
         public ContainerConfigBuilder waitForLogEntry(String logEntry) {
             container.waitForLogEntry = logEntry;
             return this;
@@ -112,11 +363,55 @@ public class ContainerConfig {
             return this;
         }
 
+        public ContainerConfigBuilder probeTimeoutMillis(Integer probeTimeoutMillis) {
+            container.probeTimeoutMillis = probeTimeoutMillis;
+            return this;
+        }
+
+        public ContainerConfigBuilder withPollStrategy(PollStrategy pollStrategy) {
+            container.pollStrategy = pollStrategy;
+            return this;
+        }
+
         public ContainerConfigBuilder displayLogs(Boolean displayLogs) {
             container.displayLogs = displayLogs;
             return this;
         }
 
+        /**
+         * Limits the log tail that is displayed to the last maxLines lines within the last maxBytes bytes
+         */
+        public ContainerConfigBuilder logTail(Integer maxBytes, Integer maxLines) {
+            container.logTailBytes = maxBytes;
+            container.logTailLines = maxLines;
+            return this;
+        }
+
+        public ContainerConfigBuilder logDirectory(Path logDirectory) {
+            container.logDirectory = logDirectory;
+            return this;
+        }
+
+        public ContainerConfigBuilder dependsOn(String... containerNames) {
+            container.dependencies.addAll(Arrays.asList(containerNames));
+            return this;
+        }
+
+        public ContainerConfigBuilder pooled(Boolean pooled) {
+            container.pooled = pooled;
+            return this;
+        }
+
+        public ContainerConfigBuilder snapshot(Boolean snapshot) {
+            container.snapshot = snapshot;
+            return this;
+        }
+
+        public ContainerConfigBuilder lazy(Boolean lazy) {
+            container.lazy = lazy;
+            return this;
+        }
+
         public ContainerConfig build() {
             if (container.image == null) {
                 throw new IllegalArgumentException("Container image cannot be empty");
@@ -127,8 +422,51 @@ public class ContainerConfig {
             if (container.waitForUrl != null && container.exposedPort == null) {
                 throw new IllegalArgumentException("You cannot wait for URL without exposing a port");
             }
+            if (container.waitForPort && container.exposedPort == null) {
+                throw new IllegalArgumentException("You cannot wait for port without exposing it");
+            }
+            if (container.httpProbe == null) {
+                throw new IllegalArgumentException("HTTP probe cannot be empty");
+            }
+            if (container.logTailBytes == null || container.logTailBytes < 1 || container.logTailLines == null || container.logTailLines < 1) {
+                throw new IllegalArgumentException("Log tail limits must be positive");
+            }
+            validateMounts();
+            if (container.cpuLimit != null && container.cpuLimit < MIN_CPU_LIMIT) {
+                throw new IllegalArgumentException("CPU limit must be at least " + MIN_CPU_LIMIT);
+            }
+            if (container.memoryLimitMb != null && container.memoryLimitMb <= 0) {
+                throw new IllegalArgumentException("Memory limit must be positive");
+            }
+            if (container.pollStrategy == null) {
+                throw new IllegalArgumentException("Poll strategy cannot be empty");
+            }
+            if (container.dependencies.contains(container.name)) {
+                throw new IllegalArgumentException("Container cannot depend on itself");
+            }
+            if (container.pooled && !container.dependencies.isEmpty()) {
+                throw new IllegalArgumentException("Pooled container is started in advance and cannot depend on other containers");
+            }
             return container;
         }
 
+        private void validateMounts() {
+            Set<String> containerPaths = new HashSet<>();
+            List<String> allPaths = new ArrayList<>(container.tmpfs.keySet());
+            for (String bind : container.binds) {
+                //host paths may contain a drive letter, the container path is the last part
+                String target = bind.endsWith(":ro") ? bind.substring(0, bind.length() - 3) : bind;
+                allPaths.add(target.substring(target.lastIndexOf(':') + 1));
+            }
+            for (String containerPath : allPaths) {
+                if (containerPath == null || !containerPath.startsWith("/")) {
+                    throw new IllegalArgumentException("Mount path must be absolute: " + containerPath);
+                }
+                if (!containerPaths.add(containerPath)) {
+                    throw new IllegalArgumentException("Path is mounted twice: " + containerPath);
+                }
+            }
+        }
+
     }
 }
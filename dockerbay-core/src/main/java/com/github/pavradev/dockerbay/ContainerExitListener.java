@@ -0,0 +1,14 @@
+package com.github.pavradev.dockerbay;
+
+/**
+ * Receives exits of containers
+ */
+@FunctionalInterface
+public interface ContainerExitListener {
+
+    /**
+     * @param exitCode    exit code of the main process, null if the daemon did not report it
+     * @param outOfMemory true if the container was killed by the OOM killer
+     */
+    void onContainerExit(String containerName, Integer exitCode, boolean outOfMemory);
+}
@@ -0,0 +1,40 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of container exits reported by the docker daemon
+ */
+class ContainerExits implements ContainerExitListener {
+    private static final Logger log = LoggerFactory.getLogger(ContainerExits.class);
+
+    private final Map<String, CompletableFuture<Integer>> exits = new ConcurrentHashMap<>();
+    private final Set<String> outOfMemoryContainers = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void onContainerExit(String containerName, Integer exitCode, boolean outOfMemory) {
+        if (outOfMemory) {
+            outOfMemoryContainers.add(containerName);
+        } else {
+            log.info("Container {} exited with code {}", containerName, exitCode);
+            of(containerName).complete(exitCode);
+        }
+    }
+
+    /**
+     * @return future completed with the exit code once the container exits
+     */
+    public CompletableFuture<Integer> of(String containerName) {
+        return exits.computeIfAbsent(containerName, name -> new CompletableFuture<>());
+    }
+
+    public boolean isOutOfMemory(String containerName) {
+        return outOfMemoryContainers.contains(containerName);
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide pool of started and ready containers, keyed by ContainerConfig fingerprint.
+ * <p>
+ * An environment leases a warm container for every pooled ContainerConfig and connects it to its network
+ * under the container name. Leased containers are removed with the environment; the pool refills
+ * in the background up to the configured size for every fingerprint that has been asked for.
+ * Warm containers idle for longer than max idle are removed, and so are the fingerprints nobody asked for during that time.
+ * Create the pool once, register it with every EnvironmentFactory and close it when done; it is closed on JVM shutdown anyway.
+ */
+public class ContainerPool implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ContainerPool.class);
+
+    public static final int DEFAULT_SIZE = 1;
+    public static final Duration DEFAULT_MAX_IDLE = Duration.ofMinutes(5);
+    public static final int DEFAULT_REFILL_CONCURRENCY = 2;
+
+    private static final String CONTAINER_NAME_PREFIX = "dockerbay-pool-";
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private class Slot {
+        private final ContainerConfig config;
+        private final Deque<PooledContainer> warm = new ArrayDeque<>();
+        private int inFlight = 0;
+        private Instant lastDemand = Instant.now();
+
+        private Slot(ContainerConfig config) {
+            this.config = config;
+        }
+    }
+
+    private DockerClientWrapper dockerClient;
+    private ReadinessChecker readinessChecker;
+    private int size = DEFAULT_SIZE;
+    private Duration maxIdle = DEFAULT_MAX_IDLE;
+    private int refillConcurrency = DEFAULT_REFILL_CONCURRENCY;
+
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final AtomicInteger containerCounter = new AtomicInteger();
+    private ExecutorService refillExecutor;
+    private ScheduledExecutorService evictionExecutor;
+    private boolean closed = false;
+
+    private ContainerPool() {
+    }
+
+    /**
+     * Takes a warm container with the fingerprint of the given config and triggers a refill.
+     *
+     * @return leased container or null if there is no warm one yet
+     */
+    synchronized PooledContainer lease(ContainerConfig config) {
+        if (closed) {
+            return null;
+        }
+        Slot slot = slots.computeIfAbsent(config.getFingerprint(), fingerprint -> new Slot(config));
+        slot.lastDemand = Instant.now();
+        PooledContainer container = slot.warm.poll();
+        if (container != null) {
+            ReadinessChecker.closeQuietly(container.getExitSubscription());
+        }
+        refill(slot);
+        return container;
+    }
+
+    synchronized int getWarmCount(ContainerConfig config) {
+        Slot slot = slots.get(config.getFingerprint());
+        return slot == null ? 0 : slot.warm.size();
+    }
+
+    private synchronized void refill(Slot slot) {
+        while (!closed && slot.warm.size() + slot.inFlight < size) {
+            slot.inFlight++;
+            try {
+                refillExecutor.execute(() -> warmUp(slot));
+            } catch (RejectedExecutionException e) {
+                slot.inFlight--;
+                return;
+            }
+        }
+    }
+
+    private void warmUp(Slot slot) {
+        ContainerConfig config = slot.config;
+        String name = CONTAINER_NAME_PREFIX + config.getFingerprint().substring(0, 12) + "-" + Session.ID + "-" + containerCounter.incrementAndGet();
+        ContainerExits exits = new ContainerExits();
+        Closeable exitSubscription = null;
+        boolean added = false;
+        try {
+            log.info("Warming up pooled container {} for {}", name, config.getImage());
+            exitSubscription = dockerClient.subscribeToContainerExits(Collections.singletonList(name), (containerName, exitCode, outOfMemory) -> {
+                exits.onContainerExit(containerName, exitCode, outOfMemory);
+                if (!outOfMemory) {
+                    discardIfWarm(slot, containerName);
+                }
+            });
+            dockerClient.createContainer(CreateContainerRequest.builder()
+                    .withName(name)
+                    .fromImage(config.getImage())
+                    .withCmd(config.getCmd())
+                    .withEnvVariables(config.getEnvVariables())
+                    .withTmpfs(config.getTmpfs())
+                    .withBinds(config.getBinds())
+                    .withCpuLimit(config.getCpuLimit())
+                    .withMemoryLimitMb(config.getMemoryLimitMb())
+                    .withExposedPort(config.getExposedPort())
+                    .build());
+            dockerClient.startContainer(name);
+            Integer localPort = null;
+            if (config.getExposedPort() != null) {
+                localPort = dockerClient.getPortMappings(name).get(config.getExposedPort());
+            }
+            readinessChecker.waitUntilReady(name, config, localPort, exits);
+            synchronized (this) {
+                if (!closed) {
+                    slot.warm.add(new PooledContainer(name, localPort, Instant.now(), exitSubscription));
+                    added = true;
+                }
+            }
+        } catch (Exception e) {
+            log.warn(String.format("Failed to warm up pooled container %s", name), e);
+        } finally {
+            synchronized (this) {
+                slot.inFlight--;
+            }
+            if (!added) {
+                ReadinessChecker.closeQuietly(exitSubscription);
+                removeQuietly(name);
+            }
+        }
+    }
+
+    private void discardIfWarm(Slot slot, String containerName) {
+        PooledContainer exited = null;
+        synchronized (this) {
+            for (Iterator<PooledContainer> it = slot.warm.iterator(); it.hasNext(); ) {
+                PooledContainer container = it.next();
+                if (container.getName().equals(containerName)) {
+                    it.remove();
+                    exited = container;
+                }
+            }
+        }
+        if (exited != null) {
+            log.warn("Pooled container {} exited while waiting for a lease", containerName);
+            discard(exited);
+        }
+    }
+
+    void evictIdle() {
+        List<PooledContainer> evicted = new ArrayList<>();
+        Instant idleLimit = Instant.now().minus(maxIdle);
+        synchronized (this) {
+            for (Iterator<Slot> slotIt = slots.values().iterator(); slotIt.hasNext(); ) {
+                Slot slot = slotIt.next();
+                for (Iterator<PooledContainer> it = slot.warm.iterator(); it.hasNext(); ) {
+                    PooledContainer container = it.next();
+                    if (container.getIdleSince().isBefore(idleLimit)) {
+                        it.remove();
+                        evicted.add(container);
+                    }
+                }
+                if (slot.lastDemand.isBefore(idleLimit) && slot.warm.isEmpty() && slot.inFlight == 0) {
+                    slotIt.remove();
+                }
+            }
+        }
+        for (PooledContainer container : evicted) {
+            log.info("Evicting idle pooled container {}", container.getName());
+            discard(container);
+        }
+    }
+
+    private void discard(PooledContainer container) {
+        ReadinessChecker.closeQuietly(container.getExitSubscription());
+        removeQuietly(container.getName());
+    }
+
+    private void removeQuietly(String containerName) {
+        try {
+            dockerClient.stopContainer(containerName);
+        } catch (Exception e) {
+            log.debug("Failed to stop pooled container " + containerName, e);
+        }
+        try {
+            dockerClient.removeContainer(containerName);
+        } catch (Exception e) {
+            log.debug("Failed to remove pooled container " + containerName, e);
+        }
+    }
+
+    /**
+     * Removes all warm containers and stops refilling
+     */
+    @Override
+    public void close() {
+        List<PooledContainer> warm = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            slots.values().forEach(slot -> warm.addAll(slot.warm));
+            slots.clear();
+        }
+        evictionExecutor.shutdownNow();
+        refillExecutor.shutdownNow();
+        warm.forEach(this::discard);
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "dockerbay-pool-" + name + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static ContainerPoolBuilder builder() {
+        return new ContainerPoolBuilder();
+    }
+
+    public static class ContainerPoolBuilder {
+        private ContainerPool pool = new ContainerPool();
+        private Client httpClient;
+
+        private ContainerPoolBuilder() {
+        }
+
+        public ContainerPoolBuilder withDockerClientWrapper(DockerClientWrapper dockerClient) {
+            pool.dockerClient = dockerClient;
+            return this;
+        }
+
+        public ContainerPoolBuilder withHttpClient(Client httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        /**
+         * Number of warm containers kept for every fingerprint
+         */
+        public ContainerPoolBuilder withSize(int size) {
+            pool.size = size;
+            return this;
+        }
+
+        public ContainerPoolBuilder withMaxIdle(Duration maxIdle) {
+            pool.maxIdle = maxIdle;
+            return this;
+        }
+
+        /**
+         * Maximum number of containers warmed up at the same time
+         */
+        public ContainerPoolBuilder withRefillConcurrency(int refillConcurrency) {
+            pool.refillConcurrency = refillConcurrency;
+            return this;
+        }
+
+        public ContainerPool build() {
+            if (pool.dockerClient == null) {
+                throw new IllegalArgumentException("Docker client cannot be empty");
+            }
+            if (pool.size < 1 || pool.refillConcurrency < 1) {
+                throw new IllegalArgumentException("Pool size and refill concurrency must be positive");
+            }
+            if (pool.maxIdle == null || pool.maxIdle.isNegative() || pool.maxIdle.isZero()) {
+                throw new IllegalArgumentException("Max idle must be positive");
+            }
+            ContainerPool result = this.pool;
+            this.pool = null;
+            result.readinessChecker = new ReadinessChecker(result.dockerClient, httpClient != null ? httpClient : ClientBuilder.newClient());
+            result.refillExecutor = Executors.newFixedThreadPool(result.refillConcurrency, daemonThreadFactory("refill"));
+            result.evictionExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("eviction"));
+            long evictionPeriodMillis = Math.max(1000, result.maxIdle.toMillis() / 2);
+            result.evictionExecutor.scheduleWithFixedDelay(result::evictIdle, evictionPeriodMillis, evictionPeriodMillis, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(result::close, "dockerbay-pool-shutdown"));
+            return result;
+        }
+    }
+}
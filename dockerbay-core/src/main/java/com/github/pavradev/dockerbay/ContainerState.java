@@ -0,0 +1,50 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a container as listed by docker
+ */
+public class ContainerState {
+    private final String name;
+    private final boolean running;
+    private final Map<Integer, Integer> portMappings;
+    private final Map<String, String> labels;
+
+    public ContainerState(String name, boolean running, Map<Integer, Integer> portMappings) {
+        this(name, running, portMappings, Collections.emptyMap());
+    }
+
+    public ContainerState(String name, boolean running, Map<Integer, Integer> portMappings, Map<String, String> labels) {
+        this.name = name;
+        this.running = running;
+        this.portMappings = Collections.unmodifiableMap(new HashMap<>(portMappings));
+        this.labels = Collections.unmodifiableMap(new HashMap<>(labels));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return host ports per exposed container port
+     */
+    public Map<Integer, Integer> getPortMappings() {
+        return portMappings;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public String toString() {
+        return name + (running ? " running " : " not running ") + portMappings;
+    }
+}
@@ -2,6 +2,7 @@ package com.github.pavradev.dockerbay;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +19,11 @@ public class CreateContainerRequest {
     private List<String> cmd;
     private Map<String, String> envVariables = new HashMap<>();
     private List<String> links = new ArrayList<>();
+    private Map<String, String> labels = new HashMap<>();
+    private Map<String, String> tmpfs = new LinkedHashMap<>();
+    private List<String> binds = new ArrayList<>();
+    private Double cpuLimit;
+    private Integer memoryLimitMb;
 
     //so far only one port can be exposed
     private Integer exposedPort;
@@ -57,6 +63,26 @@ public class CreateContainerRequest {
         return exposedPort;
     }
 
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    public Map<String, String> getTmpfs() {
+        return tmpfs;
+    }
+
+    public List<String> getBinds() {
+        return binds;
+    }
+
+    public Double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    public Integer getMemoryLimitMb() {
+        return memoryLimitMb;
+    }
+
     public static CreateContainerRequestBuilder builder() {
         return new CreateContainerRequestBuilder();
     }
@@ -110,6 +136,35 @@ public class CreateContainerRequest {
             return this;
         }
 
+        public CreateContainerRequestBuilder withLabel(String name, String value) {
+            createContainerRequest.labels.put(name, value);
+            return this;
+        }
+
+        public CreateContainerRequestBuilder withTmpfs(Map<String, String> tmpfs) {
+            if (tmpfs != null) {
+                createContainerRequest.tmpfs = new LinkedHashMap<>(tmpfs);
+            }
+            return this;
+        }
+
+        public CreateContainerRequestBuilder withBinds(List<String> binds) {
+            if (binds != null) {
+                createContainerRequest.binds = new ArrayList<>(binds);
+            }
+            return this;
+        }
+
+        public CreateContainerRequestBuilder withCpuLimit(Double cpuLimit) {
+            createContainerRequest.cpuLimit = cpuLimit;
+            return this;
+        }
+
+        public CreateContainerRequestBuilder withMemoryLimitMb(Integer memoryLimitMb) {
+            createContainerRequest.memoryLimitMb = memoryLimitMb;
+            return this;
+        }
+
         public CreateContainerRequestBuilder withExposedPort(Integer exposedPort) {
             createContainerRequest.exposedPort = exposedPort;
             return this;
@@ -0,0 +1,85 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
+
+/**
+ * Dependencies between the containers of an environment
+ */
+class DependencyGraph {
+
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+    private DependencyGraph() {
+    }
+
+    /**
+     * @throws EnvironmentException if a container name is duplicated, a dependency is unknown or dependencies form a cycle
+     */
+    static DependencyGraph of(List<ContainerConfig> containers) {
+        DependencyGraph graph = new DependencyGraph();
+        for (ContainerConfig container : containers) {
+            if (graph.dependencies.containsKey(container.getName())) {
+                throw new EnvironmentException("Duplicate container name " + container.getName());
+            }
+            graph.dependencies.put(container.getName(), new LinkedHashSet<>(container.getDependencies()));
+        }
+        graph.validate();
+        return graph;
+    }
+
+    public Set<String> getDependencies(String containerName) {
+        return dependencies.get(containerName);
+    }
+
+    /**
+     * @return names of the containers that directly depend on the given one
+     */
+    public Set<String> getDependents(String containerName) {
+        Set<String> dependents = new LinkedHashSet<>();
+        dependencies.forEach((name, deps) -> {
+            if (deps.contains(containerName)) {
+                dependents.add(name);
+            }
+        });
+        return dependents;
+    }
+
+    private void validate() {
+        dependencies.forEach((name, deps) -> {
+            for (String dependency : deps) {
+                if (!dependencies.containsKey(dependency)) {
+                    throw new EnvironmentException(String.format("Container %s depends on unknown container %s", name, dependency));
+                }
+            }
+        });
+        Set<String> visited = new HashSet<>();
+        for (String name : dependencies.keySet()) {
+            findCycle(name, visited, new ArrayList<>());
+        }
+    }
+
+    private void findCycle(String name, Set<String> visited, List<String> path) {
+        int index = path.indexOf(name);
+        if (index >= 0) {
+            List<String> cycle = new ArrayList<>(path.subList(index, path.size()));
+            cycle.add(name);
+            throw new EnvironmentException("Cyclic container dependency " + String.join(" -> ", cycle));
+        }
+        if (!visited.add(name)) {
+            return;
+        }
+        path.add(name);
+        for (String dependency : dependencies.get(name)) {
+            findCycle(dependency, visited, path);
+        }
+        path.remove(path.size() - 1);
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.pavradev.dockerbay;
 
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -15,13 +19,89 @@ public interface DockerClientWrapper {
 
     void removeContainer(String containerName);
 
+    /**
+     * Kills and removes all the containers with the label, running or not, without a separate stop call per container
+     *
+     * @return names of the removed containers
+     * @throws com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException if some containers could not be removed,
+     *                                                                               after the others are removed
+     */
+    List<String> forceRemoveContainers(String labelName, String labelValue);
+
     Map<Integer, Integer> getPortMappings(String containerName);
 
+    /**
+     * Lists all the containers with the label, running or not, in one call
+     */
+    List<ContainerState> listContainers(String labelName, String labelValue);
+
+    /**
+     * Lists all the containers that have the label, whatever its value is
+     */
+    List<ContainerState> listContainers(String labelName);
+
+    /**
+     * Reads the whole log into memory, prefer streamContainerLogs for containers that log a lot
+     */
     String getContainerLogs(String containerName);
 
+    /**
+     * Streams the logs written so far to the listener and returns once all of them are delivered
+     */
+    void streamContainerLogs(String containerName, LogListener listener);
+
+    /**
+     * Streams container logs from the beginning and keeps following them until the container stops
+     * or the returned subscription is closed.
+     */
+    Closeable followContainerLogs(String containerName, LogListener listener);
+
+    /**
+     * Notifies the listener when one of the given containers dies or is killed for running out of memory.
+     * Notifications continue until the returned subscription is closed.
+     */
+    Closeable subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener);
+
     void createNetwork(String networkName);
 
     void deleteNetwork(String networkName);
 
+    /**
+     * @return names of the networks that contain the given part
+     */
+    List<String> listNetworks(String namePart);
+
+    /**
+     * @return labels of the networks that have the label, whatever its value is, by network name
+     */
+    Map<String, Map<String, String>> listLabeledNetworks(String labelName);
+
+    /**
+     * Connects a running container to a network where it is reachable under the given alias
+     */
+    void connectToNetwork(String containerName, String networkName, String alias);
+
     void pullImage(String imageName);
+
+    /**
+     * @return true if the image is on the docker host
+     */
+    boolean isImagePresent(String imageName);
+
+    /**
+     * @return id of the image on the docker host or null if it is missing
+     */
+    String getImageId(String imageName);
+
+    /**
+     * Saves the container as repository:tag image
+     */
+    void commitContainer(String containerName, String repository, String tag);
+
+    /**
+     * @return repository:tag names of the images in the repository with their creation time
+     */
+    Map<String, Instant> listImages(String repository);
+
+    void removeImage(String imageName);
 }
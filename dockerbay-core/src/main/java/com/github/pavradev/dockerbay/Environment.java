@@ -1,21 +1,36 @@
 package com.github.pavradev.dockerbay;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Client;
-import javax.ws.rs.core.Response;
 
+import com.github.pavradev.dockerbay.EnvironmentEvent.Phase;
 import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,161 +42,690 @@ import org.slf4j.LoggerFactory;
 public class Environment {
     private static final Logger log = LoggerFactory.getLogger(Environment.class);
 
-    private static final int BETWEEN_RETRY_MILLIS = 2000;
-    private Status status;
+    public static final int DEFAULT_PULL_CONCURRENCY = 4;
+    public static final int DEFAULT_START_CONCURRENCY = 1;
+    public static final int DEFAULT_STOP_CONCURRENCY = 1;
+    /**
+     * Label holding the network name of the environment, set on all its containers
+     */
+    public static final String ENVIRONMENT_LABEL = "dockerbay.environment";
+    /**
+     * Label holding the registry key of a shared environment, set on all its containers
+     */
+    public static final String SHARED_LABEL = "dockerbay.shared";
+    /**
+     * Label holding the directory of the SharedEnvironmentRegistry of a shared environment, read by the ResourceReaper
+     */
+    public static final String SHARED_REGISTRY_LABEL = "dockerbay.shared.registry";
+    private static final AtomicInteger sharedAttachmentCounter = new AtomicInteger();
+    private static final AtomicInteger lifecycleThreadCounter = new AtomicInteger();
+    private static final Executor DEFAULT_LIFECYCLE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "dockerbay-lifecycle-" + lifecycleThreadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.UNINITIALIZED);
 
-    public enum Status {UNINITIALIZED, INITIALIZED, PARTIALLY_INITIALIZED, CLEANED}
+    public enum Status {UNINITIALIZED, INITIALIZING, INITIALIZED, PARTIALLY_INITIALIZED, CLEANING, CLEANED}
+
+    /**
+     * GRACEFUL stops containers one by one in dependency order before removing them.
+     * FORCE kills and removes all the containers of the environment with one bulk call on the environment label.
+     */
+    public enum CleanupMode {GRACEFUL, FORCE}
 
     private DockerClientWrapper dockerClient;
-    private Client httpClient;
+    private ReadinessChecker readinessChecker;
+    private volatile ContainerPool containerPool;
+    private volatile ImageResolver imageResolver;
+    private volatile SnapshotCache snapshotCache;
+    private volatile Executor lifecycleExecutor = DEFAULT_LIFECYCLE_EXECUTOR;
+    private volatile Exception initializationError;
+    private final List<EnvironmentListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile SharedEnvironmentRegistry sharedRegistry;
+    private volatile String sharedId;
+    private volatile String sharedKey;
+    private volatile String sharedAttachmentId;
+    private volatile boolean attachedToShared = false;
+    private volatile AdmissionScheduler admissionScheduler;
+    private volatile AdmissionScheduler.Admission admission;
 
     Environment(DockerClientWrapper dockerClient, Client httpClient) {
-        this.httpClient = httpClient;
         this.dockerClient = dockerClient;
-        this.status = Status.UNINITIALIZED;
+        this.readinessChecker = new ReadinessChecker(dockerClient, httpClient);
+        this.imageResolver = new ImageResolver(dockerClient, ImagePullPolicy.always());
     }
 
-    private String networkName;
-    private List<ContainerConfig> containers = new ArrayList<>();
+    private volatile String networkName;
+    private volatile List<ContainerConfig> containers = new ArrayList<>();
+    private volatile DependencyGraph dependencyGraph = DependencyGraph.of(containers);
+    private volatile int pullConcurrency = DEFAULT_PULL_CONCURRENCY;
+    private volatile int startConcurrency = DEFAULT_START_CONCURRENCY;
+    private volatile int stopConcurrency = DEFAULT_STOP_CONCURRENCY;
+    private volatile CleanupMode cleanupMode = CleanupMode.GRACEFUL;
 
-    private Deque<String> startedContainers = new LinkedList<>();
-    private Map<String, ContainerConfig> containerConfigMap = new HashMap<>();
-    private Map<String, Integer> allocatedPortsPerContainer = new HashMap<>();
+    private Deque<String> startedContainers = new ConcurrentLinkedDeque<>();
+    private Map<String, ContainerConfig> containerConfigMap = new ConcurrentHashMap<>();
+    private Map<String, Integer> allocatedPortsPerContainer = new ConcurrentHashMap<>();
+    private Map<String, String> leasedContainerNames = new ConcurrentHashMap<>();
+    private final Set<String> readyContainers = ConcurrentHashMap.newKeySet();
+    private final Map<String, Throwable> lazyStartFailures = new ConcurrentHashMap<>();
+    //lazy starts and the beginning of the cleanup exclude each other, so that nothing is started after the cleanup
+    private final Object lazyStartLock = new Object();
+    private ContainerExits containerExits = new ContainerExits();
 
     public void setNetworkName(String networkName) {
         this.networkName = networkName;
     }
 
+    /**
+     * @throws EnvironmentException if container dependencies are unknown or cyclic
+     */
     public void setContainers(List<ContainerConfig> containers) {
+        this.dependencyGraph = DependencyGraph.of(containers);
         this.containers = new ArrayList<>(containers);
     }
 
+    public void setPullConcurrency(int pullConcurrency) {
+        if (pullConcurrency < 1) {
+            throw new IllegalArgumentException("Pull concurrency must be positive");
+        }
+        this.pullConcurrency = pullConcurrency;
+    }
+
+    /**
+     * Maximum number of containers that are started and checked for readiness at the same time.
+     * Containers are still started only after all their dependencies are ready.
+     */
+    public void setStartConcurrency(int startConcurrency) {
+        if (startConcurrency < 1) {
+            throw new IllegalArgumentException("Start concurrency must be positive");
+        }
+        this.startConcurrency = startConcurrency;
+    }
+
+    /**
+     * Maximum number of containers that are stopped and removed at the same time.
+     * A container is still stopped only after all the containers depending on it are removed.
+     */
+    public void setStopConcurrency(int stopConcurrency) {
+        if (stopConcurrency < 1) {
+            throw new IllegalArgumentException("Stop concurrency must be positive");
+        }
+        this.stopConcurrency = stopConcurrency;
+    }
+
+    public void setCleanupMode(CleanupMode cleanupMode) {
+        if (cleanupMode == null) {
+            throw new IllegalArgumentException("Cleanup mode cannot be empty");
+        }
+        this.cleanupMode = cleanupMode;
+    }
+
+    void setImageResolver(ImageResolver imageResolver) {
+        this.imageResolver = imageResolver;
+    }
+
+    /**
+     * Shares the environment with the other JVMs that use the registry and create an environment with the same id and containers.
+     * The first JVM starts the containers, the next ones attach to them and the last one to clean up removes them.
+     * Shared environments start all their containers, lazy or not, and lease nothing from a container pool.
+     */
+    void setSharedRegistry(SharedEnvironmentRegistry sharedRegistry, String sharedId) {
+        this.sharedRegistry = sharedRegistry;
+        this.sharedId = sharedId;
+    }
+
+    void setAdmissionScheduler(AdmissionScheduler admissionScheduler) {
+        this.admissionScheduler = admissionScheduler;
+    }
+
+    void setSnapshotCache(SnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    /**
+     * Executor for initializeAsync and cleanupAsync, a shared pool of daemon threads by default
+     */
+    public void setLifecycleExecutor(Executor lifecycleExecutor) {
+        this.lifecycleExecutor = lifecycleExecutor;
+    }
+
+    public void addListener(EnvironmentListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Pool to lease pooled containers from
+     */
+    public void setContainerPool(ContainerPool containerPool) {
+        this.containerPool = containerPool;
+    }
+
     public Status getStatus() {
-        return this.status;
+        return this.status.get();
     }
 
     private void setStatus(Status status) {
-        this.status = status;
+        this.status.set(status);
     }
 
+    /**
+     * Starts the container first if it is lazy and not started yet
+     */
     public Integer getAllocatedPort(String containerName) {
+        boolean lazy = this.containers.stream().anyMatch(c -> c.getName().equals(containerName) && c.getLazy());
+        if (lazy) {
+            ensureStarted(containerName);
+        }
         return this.allocatedPortsPerContainer.get(containerName);
     }
 
+    /**
+     * Starts the given lazy containers and their dependencies unless they are already started, and waits until they are ready.
+     * A container that failed to start lazily is not retried, the failure is reported again.
+     *
+     * @throws EnvironmentException if the environment is not initialized or one of the containers fails to start
+     */
+    public void ensureStarted(String... containerNames) {
+        for (String containerName : containerNames) {
+            getContainerConfig(containerName);
+        }
+        if (readyContainers.containsAll(Arrays.asList(containerNames))) {
+            return;
+        }
+        synchronized (lazyStartLock) {
+            if (!Status.INITIALIZED.equals(getStatus())) {
+                throw new EnvironmentException(String.format("Cannot start containers of environment %s in status %s", this.networkName, getStatus()));
+            }
+            Set<String> needed = withDependencies(Arrays.asList(containerNames));
+            needed.removeAll(readyContainers);
+            if (needed.isEmpty()) {
+                return;
+            }
+            for (String containerName : needed) {
+                Throwable failure = lazyStartFailures.get(containerName);
+                if (failure != null) {
+                    throw new EnvironmentException("Container " + containerName + " failed to start earlier", failure);
+                }
+            }
+            List<ContainerConfig> batch = this.containers.stream()
+                    .filter(c -> needed.contains(c.getName()))
+                    .collect(Collectors.toList());
+            log.info("Starting lazy containers {} in environment {}", needed, this.networkName);
+            Map<String, Throwable> failedContainers = new HashMap<>();
+            try {
+                pullImages(batch);
+                Closeable exitSubscription = subscribeToContainerExits();
+                try {
+                    createAndStartContainers(batch, failedContainers);
+                } finally {
+                    ReadinessChecker.closeQuietly(exitSubscription);
+                }
+            } catch (Exception e) {
+                //containers cancelled because of another one, or not started at all, can be asked for again
+                lazyStartFailures.putAll(failedContainers);
+                needed.stream()
+                        .filter(name -> !readyContainers.contains(name) && !failedContainers.containsKey(name))
+                        .forEach(this::discardCancelledStartQuietly);
+                throw e instanceof EnvironmentException ? (EnvironmentException) e : new EnvironmentException("Failed to start containers " + needed, e);
+            }
+        }
+    }
+
+    /**
+     * @return the given containers with all their direct and indirect dependencies
+     */
+    private Set<String> withDependencies(Collection<String> containerNames) {
+        Set<String> result = new LinkedHashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>(containerNames);
+        while (!toVisit.isEmpty()) {
+            String containerName = toVisit.pop();
+            if (result.add(containerName)) {
+                toVisit.addAll(dependencyGraph.getDependencies(containerName));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return end of the container log, limited as configured by ContainerConfig.logTail
+     */
+    public String getLogTail(String containerName) {
+        ContainerConfig container = getContainerConfig(containerName);
+        LogTail tail = new LogTail(container.getLogTailBytes(), container.getLogTailLines());
+        dockerClient.streamContainerLogs(getDockerContainerName(containerName), tail);
+        return tail.getText();
+    }
+
+    /**
+     * Streams the full container log to the file, the log is never held in memory
+     */
+    public void writeLogs(String containerName, Path file) throws IOException {
+        getContainerConfig(containerName);
+        try (LogFileSink sink = new LogFileSink(file)) {
+            dockerClient.streamContainerLogs(getDockerContainerName(containerName), sink);
+        }
+    }
+
+    private ContainerConfig getContainerConfig(String containerName) {
+        return this.containers.stream()
+                .filter(c -> c.getName().equals(containerName))
+                .findFirst()
+                .orElseThrow(() -> new EnvironmentException("Unknown container " + containerName));
+    }
+
     public String buildUniqueContainerName(String name) {
         return this.networkName + "-" + name;
     }
 
+    /**
+     * Can be called once. A concurrent or repeated call fails with EnvironmentException.
+     */
     public void initialize() {
-        validateStatus(Status.UNINITIALIZED);
+        moveToStatus(Status.INITIALIZING, Status.UNINITIALIZED);
         try {
-            pullImages();
-            createNetwork();
-            createAndStartContainers();
+            if (admissionScheduler != null) {
+                this.admission = timedCall(Phase.ADMISSION_WAIT, this.networkName, this::waitForAdmission);
+            }
+            if (sharedRegistry != null) {
+                initializeShared();
+                if (attachedToShared) {
+                    //the containers run once, on the budget of the JVM that started them
+                    releaseAdmission();
+                }
+            } else {
+                startContainers(getEagerContainers());
+            }
             setStatus(Status.INITIALIZED);
         } catch (Exception e) {
             log.error("Failed to initialize environment {}" + this.networkName, e);
+            this.initializationError = e;
             setStatus(Status.PARTIALLY_INITIALIZED);
         }
     }
 
-    private void validateStatus(Status... expectedStatuses) {
-        if (!Arrays.stream(expectedStatuses).anyMatch(this.status::equals)) {
-            throw new EnvironmentException(String.format("Invalid environment status. Expected %s but was %s", expectedStatuses, this.status));
+    private AdmissionScheduler.Admission waitForAdmission() {
+        double cpus = this.containers.stream()
+                .filter(c -> c.getCpuLimit() != null)
+                .mapToDouble(ContainerConfig::getCpuLimit)
+                .sum();
+        long memoryMb = this.containers.stream()
+                .filter(c -> c.getMemoryLimitMb() != null)
+                .mapToLong(ContainerConfig::getMemoryLimitMb)
+                .sum();
+        try {
+            return admissionScheduler.admit(this.networkName, cpus, memoryMb);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EnvironmentException("Interrupted while waiting for admission of environment " + this.networkName, e);
+        }
+    }
+
+    private void releaseAdmission() {
+        AdmissionScheduler.Admission admission = this.admission;
+        if (admission != null) {
+            admission.close();
+        }
+    }
+
+    private void startContainers(List<ContainerConfig> containers) {
+        pullImages(containers);
+        createNetwork();
+        Closeable exitSubscription = subscribeToContainerExits();
+        try {
+            createAndStartContainers(containers);
+        } finally {
+            ReadinessChecker.closeQuietly(exitSubscription);
+        }
+    }
+
+    /**
+     * Attaches to the shared environment if a live JVM holds it, otherwise starts it and publishes it in the registry.
+     * The registry entry stays locked meanwhile, so the other JVMs wait for the containers instead of starting their own.
+     */
+    private void initializeShared() {
+        this.sharedKey = buildSharedKey();
+        String attachmentId = Session.ID + "-" + sharedAttachmentCounter.incrementAndGet();
+        sharedRegistry.update(sharedKey, entry -> {
+            entry.pruneDeadAttachments();
+            if (entry.getNetworkName() != null && entry.hasAttachments() && allSharedContainersRunning(entry.getNetworkName())) {
+                log.info("Attaching to shared environment {}", entry.getNetworkName());
+                this.networkName = entry.getNetworkName();
+                this.allocatedPortsPerContainer.putAll(entry.getAllocatedPorts());
+                this.containers.forEach(c -> this.readyContainers.add(c.getName()));
+                this.attachedToShared = true;
+            } else {
+                if (entry.getNetworkName() != null) {
+                    //left by JVMs that crashed, or with containers gone
+                    removeSharedLeftoversQuietly(entry.getNetworkName());
+                }
+                entry.clear();
+                startContainers(this.containers);
+                entry.setNetworkName(this.networkName);
+                this.allocatedPortsPerContainer.forEach(entry::setAllocatedPort);
+            }
+            entry.attach(attachmentId, Session.PID, Session.START_TIME);
+            this.sharedAttachmentId = attachmentId;
+            return null;
+        });
+    }
+
+    String getSharedKey() {
+        return sharedKey;
+    }
+
+    /**
+     * @return registry key made of the id and the identity of the containers, environments with the same key are interchangeable
+     */
+    private String buildSharedKey() {
+        StringBuilder canonical = new StringBuilder();
+        this.containers.stream()
+                .sorted(Comparator.comparing(ContainerConfig::getName))
+                .forEach(c -> canonical.append(c.getName()).append('=').append(c.getFingerprint())
+                        .append(new TreeSet<>(c.getDependencies())).append('\n'));
+        return sharedId.replaceAll("[^a-zA-Z0-9_.-]", "_") + "-" + Digests.sha256Hex(canonical.toString()).substring(0, 16);
+    }
+
+    /**
+     * Attached JVMs may be alive while the containers are gone, e.g. removed by hand or after a docker restart
+     */
+    private boolean allSharedContainersRunning(String sharedNetwork) {
+        Set<String> running = dockerClient.listContainers(ENVIRONMENT_LABEL, sharedNetwork).stream()
+                .filter(ContainerState::isRunning)
+                .map(ContainerState::getName)
+                .collect(Collectors.toSet());
+        List<String> missing = this.containers.stream()
+                .map(c -> sharedNetwork + "-" + c.getName())
+                .filter(name -> !running.contains(name))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            log.warn("Containers {} of shared environment {} are not running, starting it again", missing, sharedNetwork);
+        }
+        return missing.isEmpty();
+    }
+
+    private void removeSharedLeftoversQuietly(String leftoverNetwork) {
+        log.info("Removing what is left of shared environment {}", leftoverNetwork);
+        try {
+            dockerClient.forceRemoveContainers(ENVIRONMENT_LABEL, leftoverNetwork);
+            dockerClient.deleteNetwork(leftoverNetwork);
+        } catch (Exception e) {
+            log.warn("Failed to remove shared environment " + leftoverNetwork, e);
+        }
+    }
+
+    /**
+     * @return true if this was the last JVM attached, so the containers have to be removed
+     */
+    private boolean detachFromShared() {
+        try {
+            return sharedRegistry.update(sharedKey, entry -> {
+                entry.detach(this.sharedAttachmentId);
+                entry.pruneDeadAttachments();
+                if (entry.hasAttachments() || !this.networkName.equals(entry.getNetworkName())) {
+                    return false;
+                }
+                entry.clear();
+                return true;
+            });
+        } catch (Exception e) {
+            //other JVMs may still use the containers, the reaper removes them once all of them are gone
+            log.error("Failed to detach from shared environment " + this.networkName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Initializes the environment on the lifecycle executor.
+     * The future fails with EnvironmentException if the environment is only partially initialized; cleanup is still required then.
+     * Cancelling the future interrupts the initialization and cleans up whatever was already created.
+     */
+    public CompletableFuture<Environment> initializeAsync() {
+        CompletableFuture<Environment> future = new CompletableFuture<>();
+        //guarded by itself, so that a cancel never interrupts the thread once it runs another task of the executor
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        future.whenComplete((env, e) -> {
+            synchronized (worker) {
+                Thread thread = worker.get();
+                if (future.isCancelled() && thread != null) {
+                    thread.interrupt();
+                }
+            }
+        });
+        lifecycleExecutor.execute(() -> {
+            synchronized (worker) {
+                worker.set(Thread.currentThread());
+            }
+            Exception failure = null;
+            try {
+                if (!future.isDone()) {
+                    initialize();
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                synchronized (worker) {
+                    worker.set(null);
+                }
+            }
+            if (future.isCancelled()) {
+                //the interrupt may arrive after the initialization has finished
+                Thread.interrupted();
+            }
+            if (failure != null) {
+                //thrown before anything was created
+                future.completeExceptionally(failure);
+                return;
+            }
+            boolean completed = Status.INITIALIZED.equals(getStatus())
+                    ? future.complete(this)
+                    : future.completeExceptionally(new EnvironmentException("Failed to initialize environment " + this.networkName, this.initializationError));
+            //the future may have been cancelled at any point until now
+            if (!completed && !Status.UNINITIALIZED.equals(getStatus())) {
+                log.info("Initialization of environment {} was cancelled, cleaning up", this.networkName);
+                cleanup();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Atomically changes the status so that only one thread can initialize or clean up the environment
+     */
+    private void moveToStatus(Status newStatus, Status... expectedStatuses) {
+        for (Status expectedStatus : expectedStatuses) {
+            if (this.status.compareAndSet(expectedStatus, newStatus)) {
+                return;
+            }
         }
+        throw new EnvironmentException(String.format("Invalid environment status. Expected %s but was %s",
+                Arrays.toString(expectedStatuses), this.status.get()));
+    }
+
+    /**
+     * @return containers that are not lazy, with the lazy ones they depend on
+     */
+    private List<ContainerConfig> getEagerContainers() {
+        Set<String> eagerNames = withDependencies(this.containers.stream()
+                .filter(c -> !c.getLazy())
+                .map(ContainerConfig::getName)
+                .collect(Collectors.toList()));
+        return this.containers.stream()
+                .filter(c -> eagerNames.contains(c.getName()))
+                .collect(Collectors.toList());
     }
 
-    private void pullImages() {
+    private void pullImages(List<ContainerConfig> containers) {
         Set<String> uniqueImages = containers.stream()
                 .map(ContainerConfig::getImage)
-                .collect(Collectors.toSet());
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        ParallelTaskRunner runner = new ParallelTaskRunner("pull", pullConcurrency, true);
         for (String image : uniqueImages) {
-            dockerClient.pullImage(image);
+            runner.addTask(image, () -> timed(Phase.IMAGE_PULL, image, () -> imageResolver.resolve(image)));
+        }
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+        results.forEach(r -> log.info("Image {}", r));
+        List<ParallelTaskRunner.TaskResult> failures = results.stream()
+                .filter(r -> ParallelTaskRunner.Outcome.FAILED.equals(r.getOutcome()))
+                .collect(Collectors.toList());
+        if (!failures.isEmpty()) {
+            throw new EnvironmentException("Failed to pull images " + results, failures.get(0).getError());
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new EnvironmentException("Interrupted while pulling images " + results);
         }
     }
 
     private void createNetwork() {
         log.info("Creating network {}", networkName);
-        dockerClient.createNetwork(this.networkName);
+        timed(Phase.NETWORK_CREATE, this.networkName, () -> dockerClient.createNetwork(this.networkName));
     }
 
-    private void createAndStartContainers() {
-        for (ContainerConfig container : this.containers) {
-            createAndStartContainer(container);
-            waitForUrlIfNeeded(container);
-            waitForLogEntryIfNeeded(container);
+    private Closeable subscribeToContainerExits() {
+        List<String> containerNames = this.containers.stream()
+                .map(c -> buildUniqueContainerName(c.getName()))
+                .collect(Collectors.toList());
+        return dockerClient.subscribeToContainerExits(containerNames, containerExits);
+    }
+
+    /**
+     * @return name of the docker container, which differs from the unique name if the container was leased from the pool
+     */
+    private String getDockerContainerName(String name) {
+        return leasedContainerNames.getOrDefault(name, buildUniqueContainerName(name));
+    }
+
+    private void createAndStartContainers(List<ContainerConfig> containers) {
+        createAndStartContainers(containers, new HashMap<>());
+    }
+
+    /**
+     * @param failedContainers receives the error of each container that failed to start, not of the ones cancelled because of it
+     */
+    private void createAndStartContainers(List<ContainerConfig> containers, Map<String, Throwable> failedContainers) {
+        ParallelTaskRunner runner = new ParallelTaskRunner("start", startConcurrency, true);
+        Set<String> containerNames = containers.stream().map(ContainerConfig::getName).collect(Collectors.toSet());
+        for (ContainerConfig container : containers) {
+            //dependencies outside of the batch are ready already
+            Set<String> prerequisites = dependencyGraph.getDependencies(container.getName()).stream()
+                    .filter(containerNames::contains)
+                    .collect(Collectors.toSet());
+            runner.addTask(container.getName(), prerequisites, () -> {
+                if (!leaseFromPool(container)) {
+                    boolean snapshotted = container.getSnapshot() && snapshotCache != null;
+                    String snapshot = snapshotted ? snapshotCache.find(container) : null;
+                    createAndStartContainer(container, snapshot);
+                    Integer localPort = container.getWaitForUrl() != null || container.getWaitForPort() ? resolveAllocatedPort(container.getName()) : null;
+                    timed(Phase.READINESS_WAIT, container.getName(), () -> readinessChecker.waitUntilReady(
+                            buildUniqueContainerName(container.getName()), container, localPort, containerExits));
+                    if (snapshotted && snapshot == null) {
+                        snapshotCache.take(buildUniqueContainerName(container.getName()), container);
+                    }
+                }
+                this.readyContainers.add(container.getName());
+            });
+        }
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+        List<ParallelTaskRunner.TaskResult> failures = results.stream()
+                .filter(r -> ParallelTaskRunner.Outcome.FAILED.equals(r.getOutcome()))
+                .collect(Collectors.toList());
+        if (!failures.isEmpty()) {
+            failures.forEach(f -> failedContainers.put(f.getName(), f.getError()));
+            throw new EnvironmentException("Failed to start containers " + results, failures.get(0).getError());
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new EnvironmentException("Interrupted while starting containers " + results);
+        }
+        boolean portsMissing = containers.stream()
+                .anyMatch(c -> c.getExposedPort() != null && !this.allocatedPortsPerContainer.containsKey(c.getName()));
+        if (portsMissing) {
+            resolveAllocatedPorts();
         }
     }
 
-    private void waitForLogEntryIfNeeded(ContainerConfig container) {
-        String containerName = buildUniqueContainerName(container.getName());
-        if (container.getWaitForLogEntry() != null) {
-            doWithTimeout(() -> {
-                String containerLogs = dockerClient.getContainerLogs(containerName);
-                return containerLogs.contains(container.getWaitForLogEntry());
-            }, container.getTimeoutSec());
+    private Integer resolveAllocatedPort(String containerName) {
+        if (!this.allocatedPortsPerContainer.containsKey(containerName)) {
+            resolveAllocatedPorts();
         }
+        return this.allocatedPortsPerContainer.get(containerName);
     }
 
-    private void waitForUrlIfNeeded(ContainerConfig container) {
-        if (container.getWaitForUrl() != null) {
-            Integer port = getAllocatedPort(container.getName());
-            if (port == null) {
-                throw new EnvironmentException("No allocated port for container" + container.getName());
+    /**
+     * Resolves the ports of all the started containers of the environment in one docker call
+     */
+    private void resolveAllocatedPorts() {
+        List<ContainerState> states = timedCall(Phase.PORT_RESOLUTION, this.networkName,
+                () -> dockerClient.listContainers(ENVIRONMENT_LABEL, this.networkName));
+        for (ContainerState state : states) {
+            ContainerConfig container = this.containerConfigMap.get(state.getName());
+            if (container != null && container.getExposedPort() != null) {
+                Integer localPort = state.getPortMappings().get(container.getExposedPort());
+                if (localPort != null) {
+                    this.allocatedPortsPerContainer.put(container.getName(), localPort);
+                }
             }
-            final String target = "http://localhost:" + port;
-            doWithTimeout(() -> {
-                final Response response = httpClient.target(target).path(container.getWaitForUrl()).request().get();
-                return Response.Status.Family.SUCCESSFUL.equals(Response.Status.Family.familyOf(response.getStatus()));
-            }, container.getTimeoutSec());
         }
     }
 
-    private void createAndStartContainer(ContainerConfig container) {
-        final CreateContainerRequest createContainerRequest = getCreateContainerRequest(container);
-        this.startedContainers.push(createContainerRequest.getName());
-        this.containerConfigMap.put(createContainerRequest.getName(), container);
-        dockerClient.createContainer(createContainerRequest);
-        log.info("Starting container {}", createContainerRequest.getName());
-        dockerClient.startContainer(createContainerRequest.getName());
-        if (container.getExposedPort() != null) {
-            Map<Integer, Integer> portMappings = dockerClient.getPortMappings(createContainerRequest.getName());
-            Integer localPort = portMappings.get(container.getExposedPort());
-            this.allocatedPortsPerContainer.put(container.getName(), localPort);
+    private boolean leaseFromPool(ContainerConfig container) {
+        if (containerPool == null || !container.getPooled() || sharedRegistry != null) {
+            return false;
+        }
+        PooledContainer leased = containerPool.lease(container);
+        if (leased == null) {
+            log.info("No warm container in the pool for {}", container.getName());
+            return false;
+        }
+        log.info("Leased container {} from the pool for {}", leased.getName(), container.getName());
+        this.startedContainers.push(leased.getName());
+        this.containerConfigMap.put(leased.getName(), container);
+        this.leasedContainerNames.put(container.getName(), leased.getName());
+        dockerClient.connectToNetwork(leased.getName(), this.networkName, container.getName());
+        if (leased.getLocalPort() != null) {
+            this.allocatedPortsPerContainer.put(container.getName(), leased.getLocalPort());
         }
+        return true;
     }
 
-    private void doWithTimeout(Supplier<Boolean> command, Integer timeoutSec) {
-        Duration timeout = Duration.ofSeconds(timeoutSec);
-        final Instant start = Instant.now();
-        while (true) {
-            final Duration timeElapsed = Duration.between(start, Instant.now());
-            if (timeout.minus(timeElapsed).isNegative()) {
-                throw new EnvironmentException(String.format("Timeout exception"));
-            }
-            try {
-                if (command.get()) {
-                    return;
-                }
-            } catch (Exception e) {
-                log.debug("Error when executing a command");
-            }
-            try {
-                Thread.sleep(BETWEEN_RETRY_MILLIS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    /**
+     * Removes what the cancelled start of a lazy container created, the next start would conflict with it
+     */
+    private void discardCancelledStartQuietly(String containerName) {
+        String dockerName = getDockerContainerName(containerName);
+        if (!this.startedContainers.remove(dockerName)) {
+            return;
         }
+        stopAndRemoveContainerQuietly(dockerName);
+        this.containerConfigMap.remove(dockerName);
+        this.leasedContainerNames.remove(containerName);
+        this.allocatedPortsPerContainer.remove(containerName);
+    }
+
+    private void createAndStartContainer(ContainerConfig container, String snapshot) {
+        final CreateContainerRequest createContainerRequest = getCreateContainerRequest(container, snapshot);
+        this.startedContainers.push(createContainerRequest.getName());
+        this.containerConfigMap.put(createContainerRequest.getName(), container);
+        timed(Phase.CONTAINER_CREATE, container.getName(), () -> dockerClient.createContainer(createContainerRequest));
+        log.info("Starting container {}", createContainerRequest.getName());
+        timed(Phase.CONTAINER_START, container.getName(), () -> dockerClient.startContainer(createContainerRequest.getName()));
     }
 
-    private CreateContainerRequest getCreateContainerRequest(ContainerConfig container) {
+    private CreateContainerRequest getCreateContainerRequest(ContainerConfig container, String snapshot) {
         CreateContainerRequest.CreateContainerRequestBuilder containerCreateRequestBuilder = CreateContainerRequest.builder();
         containerCreateRequestBuilder.withName(buildUniqueContainerName(container.getName()));
         containerCreateRequestBuilder.withAlias(container.getName());
-        containerCreateRequestBuilder.fromImage(container.getImage());
+        containerCreateRequestBuilder.fromImage(snapshot != null ? snapshot : container.getImage());
         containerCreateRequestBuilder.inNetwork(this.networkName);
+        containerCreateRequestBuilder.withLabel(ENVIRONMENT_LABEL, this.networkName);
+        if (this.sharedKey != null) {
+            containerCreateRequestBuilder.withLabel(SHARED_LABEL, this.sharedKey);
+            containerCreateRequestBuilder.withLabel(SHARED_REGISTRY_LABEL, sharedRegistry.getDirectory().toAbsolutePath().toString());
+        }
+        //pooled containers are reachable by their network alias only
         List<String> links = this.containers.stream()
                 .filter(c -> c.getName() != container.getName())
+                .filter(c -> containerPool == null || !c.getPooled())
                 .map(c -> String.format("%s:%s", buildUniqueContainerName(c.getName()), c.getName()))
                 .collect(Collectors.toList());
         containerCreateRequestBuilder.withLinks(links);
@@ -189,51 +733,174 @@ public class Environment {
 
         containerCreateRequestBuilder.withCmd(container.getCmd());
         containerCreateRequestBuilder.withEnvVariables(container.getEnvVariables());
+        containerCreateRequestBuilder.withTmpfs(container.getTmpfs());
+        containerCreateRequestBuilder.withBinds(container.getBinds());
+        containerCreateRequestBuilder.withCpuLimit(container.getCpuLimit());
+        containerCreateRequestBuilder.withMemoryLimitMb(container.getMemoryLimitMb());
         return containerCreateRequestBuilder.build();
     }
 
+    /**
+     * Can be called once after initialize has finished. A concurrent or repeated call fails with EnvironmentException.
+     */
     public void cleanup() {
-        validateStatus(Status.INITIALIZED, Status.PARTIALLY_INITIALIZED);
-        stopAndRemoveContainersQuietly();
-        deleteNetworkQuietly();
-        setStatus(Status.CLEANED);
+        synchronized (lazyStartLock) {
+            moveToStatus(Status.CLEANING, Status.INITIALIZED, Status.PARTIALLY_INITIALIZED);
+        }
+        try {
+            if (this.sharedAttachmentId != null && !detachFromShared()) {
+                log.info("Detached from shared environment {}, other JVMs still use it", this.networkName);
+                setStatus(Status.CLEANED);
+                return;
+            }
+            //a JVM that attached to a shared environment knows its containers by label only
+            if (CleanupMode.FORCE.equals(cleanupMode) || attachedToShared) {
+                forceRemoveContainersQuietly();
+            } else {
+                stopAndRemoveContainersQuietly();
+            }
+            deleteNetworkQuietly();
+            setStatus(Status.CLEANED);
+        } finally {
+            releaseAdmission();
+        }
+    }
+
+    /**
+     * Cleans up the environment on the lifecycle executor.
+     * The cleanup is not interrupted when the future is cancelled, so that no containers are left behind.
+     */
+    public CompletableFuture<Environment> cleanupAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            cleanup();
+            return this;
+        }, lifecycleExecutor);
     }
 
     private void stopAndRemoveContainersQuietly() {
+        Set<String> containersToStop = new LinkedHashSet<>();
         while (!startedContainers.isEmpty()) {
-            String container = this.startedContainers.pop();
-            stopAndRemoveContainerQuietly(container);
+            containersToStop.add(this.startedContainers.pop());
         }
+        ParallelTaskRunner runner = new ParallelTaskRunner("stop", stopConcurrency, false);
+        for (String container : containersToStop) {
+            Set<String> startedDependents = dependencyGraph.getDependents(this.containerConfigMap.get(container).getName()).stream()
+                    .map(this::getDockerContainerName)
+                    .filter(containersToStop::contains)
+                    .collect(Collectors.toSet());
+            runner.addTask(container, startedDependents, () -> stopAndRemoveContainerQuietly(container));
+        }
+        runner.run();
     }
 
-    private void stopAndRemoveContainerQuietly(String container) {
-        if (this.containerConfigMap.get(container).getDisplayLogs()) {
-            try {
-                String logs = dockerClient.getContainerLogs(container);
-                log.debug(logs);
-            } catch (Exception e) {
-                log.error(String.format("Failed to display logs for container %s in environment %s ", container, this.networkName), e);
+    private void forceRemoveContainersQuietly() {
+        List<String> containersToRemove = new ArrayList<>();
+        while (!startedContainers.isEmpty()) {
+            containersToRemove.add(this.startedContainers.pop());
+        }
+        for (String container : containersToRemove) {
+            ContainerConfig config = this.containerConfigMap.get(container);
+            if (leasedContainerNames.containsValue(container)) {
+                //leased containers come from the pool without the environment label
+                stopAndRemoveContainerQuietly(container);
+            } else if (config.getDisplayLogs() || config.getLogDirectory() != null) {
+                captureLogsQuietly(container, config);
             }
         }
+        try {
+            log.info("Removing containers of environment {}", this.networkName);
+            timed(Phase.CONTAINER_REMOVE, this.networkName, () -> dockerClient.forceRemoveContainers(ENVIRONMENT_LABEL, this.networkName));
+        } catch (Exception e) {
+            log.error(String.format("Failed to remove containers of environment %s ", this.networkName), e);
+        }
+    }
+
+    private void stopAndRemoveContainerQuietly(String container) {
+        ContainerConfig config = this.containerConfigMap.get(container);
+        String configName = config.getName();
+        if (config.getDisplayLogs() || config.getLogDirectory() != null) {
+            captureLogsQuietly(container, config);
+        }
         try {
             log.info("Stopping container {}", container);
-            dockerClient.stopContainer(container);
+            timed(Phase.CONTAINER_STOP, configName, () -> dockerClient.stopContainer(container));
         } catch (Exception e) {
             log.error(String.format("Failed to stop container %s in environment %s ", container, this.networkName), e);
         }
         try {
-            dockerClient.removeContainer(container);
+            timed(Phase.CONTAINER_REMOVE, configName, () -> dockerClient.removeContainer(container));
         } catch (Exception e) {
             log.error(String.format("Failed to remove container %s in environment %s ", container, this.networkName), e);
         }
     }
 
+    /**
+     * Reads the log once, keeping the tail to display and streaming the full log to the log directory
+     */
+    private void captureLogsQuietly(String container, ContainerConfig config) {
+        LogTail tail = config.getDisplayLogs() ? new LogTail(config.getLogTailBytes(), config.getLogTailLines()) : null;
+        Path file = config.getLogDirectory() != null ? config.getLogDirectory().resolve(container + ".log") : null;
+        try {
+            if (file != null) {
+                Files.createDirectories(config.getLogDirectory());
+            }
+            try (LogFileSink sink = file != null ? new LogFileSink(file) : null) {
+                dockerClient.streamContainerLogs(container, payload -> {
+                    if (tail != null) {
+                        tail.onLogFrame(payload);
+                    }
+                    if (sink != null) {
+                        sink.onLogFrame(payload);
+                    }
+                });
+            }
+            if (file != null) {
+                log.info("Logs of container {} are written to {}", container, file);
+            }
+        } catch (Exception e) {
+            log.error(String.format("Failed to capture logs for container %s in environment %s ", container, this.networkName), e);
+        }
+        if (tail != null) {
+            log.debug("Logs of container {}{}:{}{}", container, tail.isTruncated() ? " (truncated)" : "", System.lineSeparator(), tail.getText());
+        }
+    }
+
     private void deleteNetworkQuietly() {
         try {
             log.info("Delete network {}", networkName);
-            dockerClient.deleteNetwork(this.networkName);
+            timed(Phase.NETWORK_DELETE, this.networkName, () -> dockerClient.deleteNetwork(this.networkName));
         } catch (Exception e) {
             log.error("Failed to delete network ", e);
         }
     }
+
+    private void timed(Phase phase, String subject, Runnable action) {
+        timedCall(phase, subject, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action and reports its duration and outcome to the listeners
+     */
+    private <T> T timedCall(Phase phase, String subject, Supplier<T> action) {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return action.get();
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            EnvironmentEvent event = new EnvironmentEvent(this.networkName, phase, subject, Duration.ofNanos(System.nanoTime() - start), error);
+            for (EnvironmentListener listener : this.listeners) {
+                try {
+                    listener.onEvent(event);
+                } catch (Exception e) {
+                    log.warn("Environment listener failed", e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+
+/**
+ * A finished step of the environment lifecycle
+ */
+public class EnvironmentEvent {
+
+    public enum Phase {
+        ADMISSION_WAIT, IMAGE_PULL, NETWORK_CREATE, CONTAINER_CREATE, CONTAINER_START, PORT_RESOLUTION, READINESS_WAIT,
+        CONTAINER_STOP, CONTAINER_REMOVE, NETWORK_DELETE
+    }
+
+    private final String environmentName;
+    private final Phase phase;
+    private final String subject;
+    private final Duration duration;
+    private final Throwable error;
+
+    EnvironmentEvent(String environmentName, Phase phase, String subject, Duration duration, Throwable error) {
+        this.environmentName = environmentName;
+        this.phase = phase;
+        this.subject = subject;
+        this.duration = duration;
+        this.error = error;
+    }
+
+    public String getEnvironmentName() {
+        return environmentName;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return container name for container phases, image for pulls, network name otherwise
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return true if the step concerns the whole environment, the subject is then the environment name
+     */
+    public boolean isEnvironmentLevel() {
+        return environmentName != null && environmentName.equals(subject);
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return cause of the failure or null if the step succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s in %d ms%s", environmentName, phase, subject, duration.toMillis(),
+                error == null ? "" : " failed: " + error.getMessage());
+    }
+}
@@ -1,17 +1,37 @@
 package com.github.pavradev.dockerbay;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 
 /**
- * Factory to produce Environment
+ * Factory to produce Environment.
+ * Can be shared by tests running in parallel.
  */
 public class EnvironmentFactory {
 
+    private static final AtomicInteger environmentCounter = new AtomicInteger();
+
     private Client httpClient;
 
     private DockerClientWrapper dockerClient;
 
+    private volatile int pullConcurrency = Environment.DEFAULT_PULL_CONCURRENCY;
+    private volatile int startConcurrency = Environment.DEFAULT_START_CONCURRENCY;
+    private volatile int stopConcurrency = Environment.DEFAULT_STOP_CONCURRENCY;
+    private volatile Environment.CleanupMode cleanupMode = Environment.CleanupMode.GRACEFUL;
+    private volatile ContainerPool containerPool;
+    private volatile ImageResolver imageResolver;
+    private volatile Executor lifecycleExecutor;
+    private volatile SharedEnvironmentRegistry sharedEnvironmentRegistry;
+    private volatile AdmissionScheduler admissionScheduler;
+    private volatile SnapshotCache snapshotCache;
+    private final List<EnvironmentListener> listeners = new CopyOnWriteArrayList<>();
+
     private EnvironmentFactory(DockerClientWrapper dockerClientWrapper){
         this(dockerClientWrapper,  ClientBuilder.newClient());
     }
@@ -19,6 +39,8 @@ public class EnvironmentFactory {
     private EnvironmentFactory(DockerClientWrapper dockerClientWrapper, Client client){
         this.dockerClient = dockerClientWrapper;
         this.httpClient = client;
+        this.imageResolver = new ImageResolver(dockerClientWrapper, ImagePullPolicy.always());
+        this.snapshotCache = new SnapshotCache(dockerClientWrapper);
     }
 
     public static EnvironmentFactory withDockerClientWrapper(DockerClientWrapper dockerClientWrapper){
@@ -29,9 +51,123 @@ public class EnvironmentFactory {
         return new EnvironmentFactory(dockerClientWrapper, httpClient);
     }
 
+    /**
+     * Maximum number of images pulled at the same time
+     */
+    public void setPullConcurrency(int pullConcurrency) {
+        if (pullConcurrency < 1) {
+            throw new IllegalArgumentException("Pull concurrency must be positive");
+        }
+        this.pullConcurrency = pullConcurrency;
+    }
+
+    /**
+     * Maximum number of containers started at the same time. Use ContainerConfig dependencies to order them.
+     */
+    public void setStartConcurrency(int startConcurrency) {
+        if (startConcurrency < 1) {
+            throw new IllegalArgumentException("Start concurrency must be positive");
+        }
+        this.startConcurrency = startConcurrency;
+    }
+
+    /**
+     * Maximum number of containers stopped and removed at the same time during cleanup
+     */
+    public void setStopConcurrency(int stopConcurrency) {
+        if (stopConcurrency < 1) {
+            throw new IllegalArgumentException("Stop concurrency must be positive");
+        }
+        this.stopConcurrency = stopConcurrency;
+    }
+
+    /**
+     * How environments are torn down, Environment.CleanupMode.GRACEFUL by default
+     */
+    public void setCleanupMode(Environment.CleanupMode cleanupMode) {
+        this.cleanupMode = cleanupMode;
+    }
+
+    /**
+     * When images are pulled from the registry, ImagePullPolicy.always() by default
+     */
+    public void setImagePullPolicy(ImagePullPolicy imagePullPolicy) {
+        this.imageResolver = new ImageResolver(dockerClient, imagePullPolicy);
+    }
+
+    /**
+     * Pool to lease pooled containers from, shared by all environments of the factory
+     */
+    public void setContainerPool(ContainerPool containerPool) {
+        this.containerPool = containerPool;
+    }
+
+    /**
+     * Executor for Environment.initializeAsync and cleanupAsync
+     */
+    public void setLifecycleExecutor(Executor lifecycleExecutor) {
+        this.lifecycleExecutor = lifecycleExecutor;
+    }
+
+    /**
+     * Shares the environments with the other JVMs of the host, e.g. surefire forks, that use the same registry.
+     * Environments with the same id and containers are started once and removed when the last JVM cleans them up.
+     * Null, the default, disables sharing.
+     */
+    public void setSharedEnvironmentRegistry(SharedEnvironmentRegistry sharedEnvironmentRegistry) {
+        this.sharedEnvironmentRegistry = sharedEnvironmentRegistry;
+    }
+
+    /**
+     * Delays the initialization of environments until their declared CPU and memory limits fit in the scheduler budget.
+     * Share the scheduler between factories to budget the whole JVM. Null, the default, admits all environments at once.
+     */
+    public void setAdmissionScheduler(AdmissionScheduler admissionScheduler) {
+        this.admissionScheduler = admissionScheduler;
+    }
+
+    /**
+     * Cache of container snapshots, shared by all environments of the factory so that it knows which snapshots are in use
+     */
+    void setSnapshotCache(SnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    /**
+     * Registers a listener on every environment created from now on, e.g. a TimingSummaryListener
+     */
+    public void addListener(EnvironmentListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * The network of the environment is named after the id, followed by the session id and a counter,
+     * so the same id can be used by parallel tests and by other JVMs at the same time
+     */
     public Environment getWithId(String id) {
         Environment environment = new Environment(dockerClient, httpClient);
-        environment.setNetworkName(id);
+        environment.setNetworkName(buildUniqueNetworkName(id));
+        environment.setPullConcurrency(pullConcurrency);
+        environment.setStartConcurrency(startConcurrency);
+        environment.setStopConcurrency(stopConcurrency);
+        environment.setCleanupMode(cleanupMode);
+        environment.setContainerPool(containerPool);
+        environment.setImageResolver(imageResolver);
+        environment.setAdmissionScheduler(admissionScheduler);
+        environment.setSnapshotCache(snapshotCache);
+        listeners.forEach(environment::addListener);
+        if (sharedEnvironmentRegistry != null) {
+            environment.setSharedRegistry(sharedEnvironmentRegistry, id);
+        }
+        if (lifecycleExecutor != null) {
+            environment.setLifecycleExecutor(lifecycleExecutor);
+        }
         return environment;
     }
+
+    static String buildUniqueNetworkName(String id) {
+        //docker names allow [a-zA-Z0-9][a-zA-Z0-9_.-] only, parameterized test names do not comply
+        String safeId = id.replaceAll("[^a-zA-Z0-9_.-]", "_");
+        return String.format("%s-%s-%d", safeId, Session.ID, environmentCounter.incrementAndGet());
+    }
 }
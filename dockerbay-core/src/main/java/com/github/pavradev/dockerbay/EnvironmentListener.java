@@ -0,0 +1,11 @@
+package com.github.pavradev.dockerbay;
+
+/**
+ * Receives a timed event for each step of the environment lifecycle.
+ * Called from the threads doing the work, so implementations must be thread safe and fast.
+ */
+@FunctionalInterface
+public interface EnvironmentListener {
+
+    void onEvent(EnvironmentEvent event);
+}
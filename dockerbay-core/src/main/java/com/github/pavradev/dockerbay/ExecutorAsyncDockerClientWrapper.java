@@ -0,0 +1,138 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts a blocking DockerClientWrapper by running its calls on an executor
+ */
+class ExecutorAsyncDockerClientWrapper implements AsyncDockerClientWrapper {
+
+    private final DockerClientWrapper dockerClient;
+    private final Executor executor;
+
+    ExecutorAsyncDockerClientWrapper(DockerClientWrapper dockerClient, Executor executor) {
+        this.dockerClient = dockerClient;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createContainer(CreateContainerRequest containerConfig) {
+        return CompletableFuture.runAsync(() -> dockerClient.createContainer(containerConfig), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> startContainer(String containerName) {
+        return CompletableFuture.runAsync(() -> dockerClient.startContainer(containerName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> stopContainer(String containerName) {
+        return CompletableFuture.runAsync(() -> dockerClient.stopContainer(containerName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeContainer(String containerName) {
+        return CompletableFuture.runAsync(() -> dockerClient.removeContainer(containerName), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> forceRemoveContainers(String labelName, String labelValue) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.forceRemoveContainers(labelName, labelValue), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Integer>> getPortMappings(String containerName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.getPortMappings(containerName), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<ContainerState>> listContainers(String labelName, String labelValue) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.listContainers(labelName, labelValue), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<ContainerState>> listContainers(String labelName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.listContainers(labelName), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> getContainerLogs(String containerName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.getContainerLogs(containerName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> streamContainerLogs(String containerName, LogListener listener) {
+        return CompletableFuture.runAsync(() -> dockerClient.streamContainerLogs(containerName, listener), executor);
+    }
+
+    @Override
+    public CompletableFuture<Closeable> followContainerLogs(String containerName, LogListener listener) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.followContainerLogs(containerName, listener), executor);
+    }
+
+    @Override
+    public CompletableFuture<Closeable> subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.subscribeToContainerExits(containerNames, listener), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> createNetwork(String networkName) {
+        return CompletableFuture.runAsync(() -> dockerClient.createNetwork(networkName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteNetwork(String networkName) {
+        return CompletableFuture.runAsync(() -> dockerClient.deleteNetwork(networkName), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> listNetworks(String namePart) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.listNetworks(namePart), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Map<String, String>>> listLabeledNetworks(String labelName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.listLabeledNetworks(labelName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> connectToNetwork(String containerName, String networkName, String alias) {
+        return CompletableFuture.runAsync(() -> dockerClient.connectToNetwork(containerName, networkName, alias), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> pullImage(String imageName) {
+        return CompletableFuture.runAsync(() -> dockerClient.pullImage(imageName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isImagePresent(String imageName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.isImagePresent(imageName), executor);
+    }
+
+    @Override
+    public CompletableFuture<String> getImageId(String imageName) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.getImageId(imageName), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> commitContainer(String containerName, String repository, String tag) {
+        return CompletableFuture.runAsync(() -> dockerClient.commitContainer(containerName, repository, tag), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Instant>> listImages(String repository) {
+        return CompletableFuture.supplyAsync(() -> dockerClient.listImages(repository), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeImage(String imageName) {
+        return CompletableFuture.runAsync(() -> dockerClient.removeImage(imageName), executor);
+    }
+}
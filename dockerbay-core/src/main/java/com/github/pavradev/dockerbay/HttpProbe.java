@@ -0,0 +1,93 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * How the URL of a container is probed for readiness: method, expected statuses and an optional body check.
+ * By default a GET with any 2xx status is enough.
+ */
+public class HttpProbe {
+
+    public enum Method {GET, HEAD}
+
+    private Method method = Method.GET;
+    private Set<Integer> expectedStatuses = Collections.emptySet();
+    private Predicate<String> bodyPredicate;
+
+    private HttpProbe() {
+    }
+
+    public static HttpProbe defaultProbe() {
+        return builder().build();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return statuses that mean ready, empty for any 2xx
+     */
+    public Set<Integer> getExpectedStatuses() {
+        return expectedStatuses;
+    }
+
+    /**
+     * @return check of the response body, null if the body does not matter
+     */
+    public Predicate<String> getBodyPredicate() {
+        return bodyPredicate;
+    }
+
+    public boolean isExpectedStatus(int status) {
+        if (expectedStatuses.isEmpty()) {
+            return status >= 200 && status < 300;
+        }
+        return expectedStatuses.contains(status);
+    }
+
+    public static HttpProbeBuilder builder() {
+        return new HttpProbeBuilder();
+    }
+
+    public static class HttpProbeBuilder {
+        private HttpProbe probe = new HttpProbe();
+
+        private HttpProbeBuilder() {
+        }
+
+        public HttpProbeBuilder withMethod(Method method) {
+            probe.method = method;
+            return this;
+        }
+
+        public HttpProbeBuilder withExpectedStatuses(Integer... statuses) {
+            probe.expectedStatuses = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(statuses)));
+            return this;
+        }
+
+        /**
+         * The body is read as UTF-8, up to HttpReadinessProbe.MAX_BODY_BYTES
+         */
+        public HttpProbeBuilder withBodyPredicate(Predicate<String> bodyPredicate) {
+            probe.bodyPredicate = bodyPredicate;
+            return this;
+        }
+
+        public HttpProbe build() {
+            if (probe.method == null) {
+                throw new IllegalArgumentException("Method cannot be empty");
+            }
+            if (probe.bodyPredicate != null && Method.HEAD.equals(probe.method)) {
+                throw new IllegalArgumentException("HEAD response has no body to check");
+            }
+            HttpProbe result = probe;
+            probe = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Sends readiness probes through the shared JAX-RS client.
+ * Responses are always drained and closed, so the connector can keep the connections alive and reuse them.
+ */
+class HttpReadinessProbe {
+
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final Client httpClient;
+
+    HttpReadinessProbe(Client httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @param timeout connect and read timeout of this probe
+     * @return true if the response matches the probe
+     */
+    public boolean probe(String baseUrl, String path, HttpProbe probe, Duration timeout) throws IOException {
+        final int timeoutMillis = (int) Math.max(1, timeout.toMillis());
+        Invocation.Builder request = httpClient.target(baseUrl)
+                .path(path)
+                .property(ClientProperties.CONNECT_TIMEOUT, timeoutMillis)
+                .property(ClientProperties.READ_TIMEOUT, timeoutMillis)
+                .request();
+        Response response = HttpProbe.Method.HEAD.equals(probe.getMethod()) ? request.head() : request.get();
+        try {
+            if (!probe.isExpectedStatus(response.getStatus())) {
+                drain(response, false);
+                return false;
+            }
+            String body = drain(response, probe.getBodyPredicate() != null);
+            return probe.getBodyPredicate() == null || probe.getBodyPredicate().test(body);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Reads the body so that the connection can be reused. A body over MAX_BODY_BYTES is abandoned and the connection is closed.
+     *
+     * @return the body if asked for, null otherwise
+     */
+    private static String drain(Response response, boolean keepBody) throws IOException {
+        if (!response.hasEntity()) {
+            return keepBody ? "" : null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int total = 0;
+        try (InputStream entity = response.readEntity(InputStream.class)) {
+            int read;
+            while (total < MAX_BODY_BYTES && (read = entity.read(buffer)) != -1) {
+                total += read;
+                if (keepBody) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        return keepBody ? new String(body.toByteArray(), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+
+/**
+ * Decides when an image is pulled from the registry.
+ * Images pinned by digest never change, so they are pulled only when missing whatever the policy is.
+ */
+public class ImagePullPolicy {
+
+    private static final ImagePullPolicy ALWAYS = new ImagePullPolicy(Duration.ZERO);
+    private static final ImagePullPolicy IF_MISSING = new ImagePullPolicy(null);
+
+    private final Duration ttl;
+
+    private ImagePullPolicy(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Pull for every environment
+     */
+    public static ImagePullPolicy always() {
+        return ALWAYS;
+    }
+
+    /**
+     * Pull only if the image is not on the docker host
+     */
+    public static ImagePullPolicy ifMissing() {
+        return IF_MISSING;
+    }
+
+    /**
+     * Pull again if the image was not pulled or found on the host during the last ttl.
+     * Meant for mutable tags like latest.
+     */
+    public static ImagePullPolicy ifOlderThan(Duration ttl) {
+        if (ttl == null || ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL cannot be negative");
+        }
+        return new ImagePullPolicy(ttl);
+    }
+
+    /**
+     * @return how long a verified image is trusted, null for forever
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    @Override
+    public String toString() {
+        if (ttl == null) {
+            return "IF_MISSING";
+        }
+        return ttl.isZero() ? "ALWAYS" : "TTL " + ttl;
+    }
+}
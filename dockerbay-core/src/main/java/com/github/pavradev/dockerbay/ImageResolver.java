@@ -0,0 +1,86 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes sure an image is on the docker host, pulling it only when the ImagePullPolicy asks for it.
+ * Images verified during this run are remembered for the whole JVM.
+ */
+class ImageResolver {
+    private static final Logger log = LoggerFactory.getLogger(ImageResolver.class);
+
+    private static final Map<String, Instant> verifiedImagesInJvm = new ConcurrentHashMap<>();
+    //as wide as verifiedImagesInJvm, resolvers of different factories pull an image once
+    private static final Map<String, Object> imageLocks = new ConcurrentHashMap<>();
+
+    private final DockerClientWrapper dockerClient;
+    private final ImagePullPolicy policy;
+    private final Map<String, Instant> verifiedImages;
+    private final Clock clock;
+
+    ImageResolver(DockerClientWrapper dockerClient, ImagePullPolicy policy) {
+        this(dockerClient, policy, verifiedImagesInJvm, Clock.systemUTC());
+    }
+
+    ImageResolver(DockerClientWrapper dockerClient, ImagePullPolicy policy, Map<String, Instant> verifiedImages, Clock clock) {
+        this.dockerClient = dockerClient;
+        this.policy = policy;
+        this.verifiedImages = verifiedImages;
+        this.clock = clock;
+    }
+
+    public void resolve(String image) {
+        //the same image requested by parallel environments is pulled once
+        synchronized (imageLocks.computeIfAbsent(image, i -> new Object())) {
+            if (isPinnedByDigest(image) || policy.getTtl() == null) {
+                resolveIfMissing(image);
+            } else {
+                resolveWithTtl(image, policy.getTtl());
+            }
+        }
+    }
+
+    private void resolveIfMissing(String image) {
+        if (verifiedImages.containsKey(image)) {
+            log.debug("Image {} already verified", image);
+            return;
+        }
+        if (dockerClient.isImagePresent(image)) {
+            log.info("Image {} is present, skip pulling", image);
+        } else {
+            log.info("Pulling missing image {}", image);
+            dockerClient.pullImage(image);
+        }
+        verifiedImages.put(image, clock.instant());
+    }
+
+    private void resolveWithTtl(String image, Duration ttl) {
+        Instant verifiedAt = verifiedImages.get(image);
+        if (!ttl.isZero() && verifiedAt != null && verifiedAt.plus(ttl).isAfter(clock.instant())) {
+            log.debug("Image {} verified less than {} ago", image, ttl);
+            return;
+        }
+        try {
+            log.info("Pulling image {}", image);
+            dockerClient.pullImage(image);
+        } catch (RuntimeException e) {
+            //allows offline runs with images that are already on the host
+            if (!dockerClient.isImagePresent(image)) {
+                throw e;
+            }
+            log.warn(String.format("Failed to pull image %s, using the local one", image), e);
+        }
+        verifiedImages.put(image, clock.instant());
+    }
+
+    private static boolean isPinnedByDigest(String image) {
+        return image.contains("@sha256:");
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.pavradev.dockerbay;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-8 log frames into text.
+ * Bytes of a character that is split between frames are kept until the next frame arrives.
+ */
+class LogDecoder {
+    private static final int CHAR_BUFFER_SIZE = 4096;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+
+    public void decode(byte[] frame, StringBuilder out) {
+        decode(frame, 0, frame.length, out);
+    }
+
+    public void decode(byte[] frame, int offset, int length, StringBuilder out) {
+        ByteBuffer input;
+        if (pending.hasRemaining()) {
+            input = ByteBuffer.allocate(pending.remaining() + length);
+            input.put(pending).put(frame, offset, length).flip();
+        } else {
+            input = ByteBuffer.wrap(frame, offset, length);
+        }
+        drain(input, false, out);
+        //at most the first bytes of one character are left over
+        pending = ByteBuffer.allocate(input.remaining());
+        pending.put(input).flip();
+    }
+
+    /**
+     * Decodes what is left at the end of the stream, an incomplete character becomes a replacement character
+     */
+    public void finish(StringBuilder out) {
+        drain(pending, true, out);
+        CoderResult result;
+        do {
+            result = decoder.flush(chars);
+            chars.flip();
+            out.append(chars);
+            chars.clear();
+        } while (result.isOverflow());
+        decoder.reset();
+        pending = ByteBuffer.allocate(0);
+    }
+
+    private void drain(ByteBuffer input, boolean endOfInput, StringBuilder out) {
+        CoderResult result;
+        do {
+            result = decoder.decode(input, chars, endOfInput);
+            chars.flip();
+            out.append(chars);
+            chars.clear();
+        } while (result.isOverflow());
+    }
+}
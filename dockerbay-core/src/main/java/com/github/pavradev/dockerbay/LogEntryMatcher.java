@@ -0,0 +1,65 @@
+package com.github.pavradev.dockerbay;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Searches a log entry in a stream of log frames without keeping the log itself.
+ * The entry is matched on UTF-8 bytes with Knuth-Morris-Pratt so that it is found
+ * even when it is split between frames.
+ */
+class LogEntryMatcher {
+
+    private final byte[] pattern;
+    private final int[] fallback;
+    private int matched = 0;
+    private boolean found = false;
+
+    LogEntryMatcher(String logEntry) {
+        if (logEntry == null || logEntry.isEmpty()) {
+            throw new IllegalArgumentException("Log entry cannot be empty");
+        }
+        this.pattern = logEntry.getBytes(StandardCharsets.UTF_8);
+        this.fallback = buildFallback(pattern);
+    }
+
+    private static int[] buildFallback(byte[] pattern) {
+        int[] fallback = new int[pattern.length];
+        int prefix = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (prefix > 0 && pattern[i] != pattern[prefix]) {
+                prefix = fallback[prefix - 1];
+            }
+            if (pattern[i] == pattern[prefix]) {
+                prefix++;
+            }
+            fallback[i] = prefix;
+        }
+        return fallback;
+    }
+
+    /**
+     * @return true if the log entry has been found in this or one of the previous frames
+     */
+    public boolean feed(byte[] frame) {
+        if (found) {
+            return true;
+        }
+        for (byte b : frame) {
+            while (matched > 0 && b != pattern[matched]) {
+                matched = fallback[matched - 1];
+            }
+            if (b == pattern[matched]) {
+                matched++;
+            }
+            if (matched == pattern.length) {
+                found = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+}
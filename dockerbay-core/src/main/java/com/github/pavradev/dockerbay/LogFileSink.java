@@ -0,0 +1,51 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes log frames to a file as they arrive, so that a full log never has to fit in memory.
+ * Frames are written as raw bytes, characters split between frames are therefore kept intact.
+ */
+class LogFileSink implements LogListener, Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private IOException error;
+
+    LogFileSink(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public synchronized void onLogFrame(byte[] payload) {
+        if (error != null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            //the log stream cannot be failed from here, the error is reported on close
+            error = e;
+        }
+    }
+
+    /**
+     * @throws IOException if one of the frames could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        if (error != null) {
+            throw new IOException("Failed to write logs to " + file, error);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.pavradev.dockerbay;
+
+/**
+ * Receives container log frames as they arrive
+ */
+public interface LogListener {
+
+    void onLogFrame(byte[] payload);
+
+    /**
+     * Log stream has ended, which for a followed stream means that the container has stopped
+     */
+    default void onComplete() {
+    }
+
+    default void onError(Throwable error) {
+    }
+}
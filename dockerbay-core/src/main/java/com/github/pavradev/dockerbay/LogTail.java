@@ -0,0 +1,82 @@
+package com.github.pavradev.dockerbay;
+
+/**
+ * Keeps the end of a container log in a ring buffer of bounded size, whatever the length of the log is.
+ * Bytes are stored as they arrive and decoded only when the text is requested.
+ */
+class LogTail implements LogListener {
+
+    private final byte[] ring;
+    private final int maxLines;
+    private long written = 0;
+
+    /**
+     * @param maxBytes size of the ring buffer
+     * @param maxLines number of last lines returned by getText
+     */
+    LogTail(int maxBytes, int maxLines) {
+        if (maxBytes < 1 || maxLines < 1) {
+            throw new IllegalArgumentException("Log tail limits must be positive");
+        }
+        this.ring = new byte[maxBytes];
+        this.maxLines = maxLines;
+    }
+
+    @Override
+    public synchronized void onLogFrame(byte[] payload) {
+        int offset = Math.max(0, payload.length - ring.length);
+        int length = payload.length - offset;
+        int position = (int) ((written + offset) % ring.length);
+        int firstPart = Math.min(length, ring.length - position);
+        System.arraycopy(payload, offset, ring, position, firstPart);
+        System.arraycopy(payload, offset + firstPart, ring, 0, length - firstPart);
+        written += payload.length;
+    }
+
+    /**
+     * @return true if the beginning of the log has been dropped
+     */
+    public synchronized boolean isTruncated() {
+        return written > ring.length;
+    }
+
+    /**
+     * @return last lines of the log, without the partial line or character that the ring buffer cut
+     */
+    public synchronized String getText() {
+        int size = (int) Math.min(written, ring.length);
+        byte[] ordered = new byte[size];
+        int start = (int) (written > ring.length ? written % ring.length : 0);
+        System.arraycopy(ring, start, ordered, 0, size - start);
+        System.arraycopy(ring, 0, ordered, size - start, start);
+        int offset = 0;
+        if (isTruncated()) {
+            //UTF-8 continuation bytes of the character that has been cut
+            while (offset < size && (ordered[offset] & 0xC0) == 0x80) {
+                offset++;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        LogDecoder decoder = new LogDecoder();
+        decoder.decode(ordered, offset, size - offset, text);
+        decoder.finish(text);
+        if (isTruncated()) {
+            int firstLineEnd = text.indexOf("\n");
+            if (firstLineEnd >= 0 && firstLineEnd < text.length() - 1) {
+                text.delete(0, firstLineEnd + 1);
+            }
+        }
+        return lastLines(text.toString(), maxLines);
+    }
+
+    private static String lastLines(String logs, int lines) {
+        int position = logs.endsWith("\n") ? logs.length() - 1 : logs.length();
+        for (int i = 0; i < lines && position > 0; i++) {
+            position = logs.lastIndexOf('\n', position - 1);
+            if (position < 0) {
+                return logs;
+            }
+        }
+        return logs.substring(position + 1);
+    }
+}
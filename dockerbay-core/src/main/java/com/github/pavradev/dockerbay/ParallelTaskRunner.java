@@ -0,0 +1,191 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs named tasks with a bounded number of threads.
+ * A task is started only after all its prerequisites have finished.
+ * In fail fast mode the first failure cancels all the tasks that are still running or waiting.
+ */
+class ParallelTaskRunner {
+
+    public enum Outcome {SUCCEEDED, FAILED, CANCELLED}
+
+    public static class TaskResult {
+        private final String name;
+        private final Outcome outcome;
+        private final Throwable error;
+
+        private TaskResult(String name, Outcome outcome, Throwable error) {
+            this.name = name;
+            this.outcome = outcome;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            if (error == null) {
+                return name + ": " + outcome;
+            }
+            return name + ": " + outcome + " (" + error.getMessage() + ")";
+        }
+    }
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final String name;
+    private final int concurrency;
+    private final boolean failFast;
+    private final Map<String, Runnable> tasks = new LinkedHashMap<>();
+    private final Map<String, Set<String>> prerequisites = new HashMap<>();
+
+    ParallelTaskRunner(String name, int concurrency, boolean failFast) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.name = name;
+        this.concurrency = concurrency;
+        this.failFast = failFast;
+    }
+
+    public void addTask(String taskName, Runnable task) {
+        addTask(taskName, Collections.emptySet(), task);
+    }
+
+    public void addTask(String taskName, Collection<String> taskPrerequisites, Runnable task) {
+        if (tasks.containsKey(taskName)) {
+            throw new IllegalArgumentException("Duplicate task " + taskName);
+        }
+        tasks.put(taskName, task);
+        prerequisites.put(taskName, new HashSet<>(taskPrerequisites));
+    }
+
+    /**
+     * Runs all the tasks and waits until they are finished.
+     *
+     * @return results in the order the tasks were added
+     */
+    public List<TaskResult> run() {
+        Map<String, TaskResult> results = new LinkedHashMap<>();
+        if (tasks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, tasks.size()), daemonThreadFactory());
+        ExecutorCompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+        Deque<String> pending = new ArrayDeque<>(tasks.keySet());
+        Map<Future<String>, String> running = new LinkedHashMap<>();
+        try {
+            boolean stopped = false;
+            while (!running.isEmpty() || (!stopped && !pending.isEmpty())) {
+                //tasks are handed over one by one so that nothing new starts after a failure
+                while (!stopped && running.size() < concurrency) {
+                    String taskName = pollReadyTask(pending, results.keySet());
+                    if (taskName == null) {
+                        break;
+                    }
+                    running.put(completionService.submit(tasks.get(taskName), taskName), taskName);
+                }
+                if (running.isEmpty()) {
+                    throw new IllegalStateException("Tasks " + pending + " have prerequisites that can never finish");
+                }
+                Future<String> done = completionService.take();
+                String taskName = running.remove(done);
+                TaskResult result = toResult(taskName, done);
+                results.put(taskName, result);
+                if (failFast && !stopped && Outcome.FAILED.equals(result.getOutcome())) {
+                    stopped = true;
+                    running.keySet().forEach(f -> f.cancel(true));
+                }
+            }
+        } catch (InterruptedException e) {
+            running.keySet().forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+        List<TaskResult> orderedResults = new ArrayList<>();
+        for (String taskName : tasks.keySet()) {
+            orderedResults.add(results.getOrDefault(taskName, new TaskResult(taskName, Outcome.CANCELLED, null)));
+        }
+        return orderedResults;
+    }
+
+    private String pollReadyTask(Deque<String> pending, Set<String> finished) {
+        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+            String taskName = it.next();
+            if (finished.containsAll(prerequisites.get(taskName))) {
+                it.remove();
+                return taskName;
+            }
+        }
+        return null;
+    }
+
+    private TaskResult toResult(String taskName, Future<String> future) throws InterruptedException {
+        try {
+            future.get();
+            return new TaskResult(taskName, Outcome.SUCCEEDED, null);
+        } catch (CancellationException e) {
+            return new TaskResult(taskName, Outcome.CANCELLED, null);
+        } catch (ExecutionException e) {
+            return new TaskResult(taskName, Outcome.FAILED, e.getCause());
+        }
+    }
+
+    private void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ThreadFactory daemonThreadFactory() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "dockerbay-" + name + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
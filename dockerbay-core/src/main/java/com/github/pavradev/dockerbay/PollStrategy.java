@@ -0,0 +1,59 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long to wait between two readiness probes
+ */
+@FunctionalInterface
+public interface PollStrategy {
+
+    /**
+     * @param attempt number of probes made so far, starting from 1
+     * @return delay before the next probe
+     */
+    Duration nextDelay(int attempt);
+
+    /**
+     * Same delay between all the probes
+     */
+    static PollStrategy fixed(Duration delay) {
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+        return attempt -> delay;
+    }
+
+    /**
+     * Delay doubles after every probe until it reaches the maximum.
+     *
+     * @param jitter fraction of the delay, from 0 to 1, that is randomly taken off to spread probes of parallel environments
+     */
+    static PollStrategy exponentialBackoff(Duration initialDelay, Duration maxDelay, double jitter) {
+        if (initialDelay.isNegative() || initialDelay.isZero() || maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("Initial delay must be positive and not greater than max delay");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1");
+        }
+        return attempt -> {
+            long maxMillis = maxDelay.toMillis();
+            long delayMillis = initialDelay.toMillis();
+            for (int i = 1; i < attempt && delayMillis < maxMillis; i++) {
+                delayMillis *= 2;
+            }
+            delayMillis = Math.min(delayMillis, maxMillis);
+            long jitterMillis = (long) (delayMillis * jitter * ThreadLocalRandom.current().nextDouble());
+            return Duration.ofMillis(delayMillis - jitterMillis);
+        };
+    }
+
+    /**
+     * Probes every 50 millis at first and slows down to one probe per second.
+     * Default strategy for containers.
+     */
+    static PollStrategy fastStart() {
+        return exponentialBackoff(Duration.ofMillis(50), Duration.ofSeconds(1), 0);
+    }
+}
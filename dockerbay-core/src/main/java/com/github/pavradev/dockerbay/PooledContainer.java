@@ -0,0 +1,40 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * Started and ready container waiting in a ContainerPool
+ */
+class PooledContainer {
+    private final String name;
+    private final Integer localPort;
+    private final Instant idleSince;
+    private final Closeable exitSubscription;
+
+    PooledContainer(String name, Integer localPort, Instant idleSince, Closeable exitSubscription) {
+        this.name = name;
+        this.localPort = localPort;
+        this.idleSince = idleSince;
+        this.exitSubscription = exitSubscription;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Host port of the exposed container port, null if nothing is exposed
+     */
+    public Integer getLocalPort() {
+        return localPort;
+    }
+
+    public Instant getIdleSince() {
+        return idleSince;
+    }
+
+    Closeable getExitSubscription() {
+        return exitSubscription;
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import javax.ws.rs.client.Client;
+
+import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits until a started container is ready according to its ContainerConfig
+ */
+class ReadinessChecker {
+    private static final Logger log = LoggerFactory.getLogger(ReadinessChecker.class);
+
+    private static final int EXIT_LOG_TAIL_LINES = 50;
+    private static final int EXIT_LOG_TAIL_BYTES = 16 * 1024;
+
+    private final DockerClientWrapper dockerClient;
+    private final HttpReadinessProbe httpReadinessProbe;
+    private final TcpPortProber portProber;
+
+    ReadinessChecker(DockerClientWrapper dockerClient, Client httpClient) {
+        this(dockerClient, httpClient, TcpPortProber.shared());
+    }
+
+    ReadinessChecker(DockerClientWrapper dockerClient, Client httpClient, TcpPortProber portProber) {
+        this.dockerClient = dockerClient;
+        this.httpReadinessProbe = new HttpReadinessProbe(httpClient);
+        this.portProber = portProber;
+    }
+
+    /**
+     * @param localPort host port of the exposed container port, null if nothing is exposed
+     * @throws EnvironmentException if the container is not ready in time or exits
+     */
+    public void waitUntilReady(String containerName, ContainerConfig container, Integer localPort, ContainerExits exits) {
+        waitForPortIfNeeded(containerName, container, localPort, exits);
+        waitForUrlIfNeeded(containerName, container, localPort, exits);
+        waitForLogEntryIfNeeded(containerName, container, exits);
+    }
+
+    private void waitForPortIfNeeded(String containerName, ContainerConfig container, Integer localPort, ContainerExits exits) {
+        if (container.getWaitForPort()) {
+            if (localPort == null) {
+                throw new EnvironmentException("No allocated port for container" + container.getName());
+            }
+            String waitingFor = String.format("port %s of container %s", container.getExposedPort(), container.getName());
+            //attempts and delays are made by the prober thread, this one only waits for the outcome
+            CompletableFuture<Void> portOpen = portProber.awaitOpen(new InetSocketAddress("localhost", localPort), container.getTcpHandshake(),
+                    Duration.ofMillis(container.getProbeTimeoutMillis()), container.getPollStrategy());
+            CompletableFuture<Integer> exit = exits.of(containerName);
+            try {
+                CompletableFuture.anyOf(portOpen, exit).get(container.getTimeoutSec(), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new EnvironmentException(String.format("Timeout after %s sec waiting for %s", container.getTimeoutSec(), waitingFor));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EnvironmentException("Interrupted while waiting for " + waitingFor);
+            } catch (ExecutionException e) {
+                throw new EnvironmentException("Failed while waiting for " + waitingFor, e.getCause());
+            } finally {
+                portOpen.cancel(false);
+            }
+            if (portOpen.isCancelled() && exit.isDone()) {
+                throw containerExitedException(containerName, exit.getNow(null), exits, waitingFor);
+            }
+        }
+    }
+
+    private void waitForLogEntryIfNeeded(String containerName, ContainerConfig container, ContainerExits exits) {
+        if (container.getWaitForLogEntry() != null) {
+            String waitingFor = String.format("log entry '%s' in container %s", container.getWaitForLogEntry(), containerName);
+            LogEntryMatcher matcher = new LogEntryMatcher(container.getWaitForLogEntry());
+            CompletableFuture<Void> logEntryFound = new CompletableFuture<>();
+            Closeable subscription = dockerClient.followContainerLogs(containerName, new LogListener() {
+                @Override
+                public void onLogFrame(byte[] payload) {
+                    if (matcher.feed(payload)) {
+                        logEntryFound.complete(null);
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    logEntryFound.completeExceptionally(new EnvironmentException("Log stream ended before " + waitingFor));
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    logEntryFound.completeExceptionally(new EnvironmentException("Failed to follow logs while waiting for " + waitingFor, error));
+                }
+            });
+            CompletableFuture<Integer> exit = exits.of(containerName);
+            try {
+                CompletableFuture.anyOf(logEntryFound, exit).get(container.getTimeoutSec(), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new EnvironmentException(String.format("Timeout after %s sec waiting for %s", container.getTimeoutSec(), waitingFor));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EnvironmentException("Interrupted while waiting for " + waitingFor);
+            } catch (ExecutionException e) {
+                //log stream ends when the container stops, give the exit event a moment to arrive
+                Integer exitCode = waitForExitCode(exit);
+                if (exit.isDone()) {
+                    throw containerExitedException(containerName, exitCode, exits, waitingFor);
+                }
+                throw (EnvironmentException) e.getCause();
+            } finally {
+                closeQuietly(subscription);
+            }
+            if (!logEntryFound.isDone() && exit.isDone()) {
+                throw containerExitedException(containerName, exit.getNow(null), exits, waitingFor);
+            }
+        }
+    }
+
+    private Integer waitForExitCode(CompletableFuture<Integer> exit) {
+        try {
+            return exit.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private void waitForUrlIfNeeded(String containerName, ContainerConfig container, Integer localPort, ContainerExits exits) {
+        if (container.getWaitForUrl() != null) {
+            if (localPort == null) {
+                throw new EnvironmentException("No allocated port for container" + container.getName());
+            }
+            final String target = "http://localhost:" + localPort;
+            doWithTimeout(probeTimeout -> {
+                try {
+                    return httpReadinessProbe.probe(target, container.getWaitForUrl(), container.getHttpProbe(), probeTimeout);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, containerName, container, exits, String.format("URL %s of container %s", container.getWaitForUrl(), container.getName()));
+        }
+    }
+
+    /**
+     * Repeats the probe until it succeeds, the container exits or the container timeout expires.
+     * The probe receives its own timeout, which never goes past the deadline.
+     */
+    private void doWithTimeout(Function<Duration, Boolean> probe, String containerName, ContainerConfig container, ContainerExits exits, String waitingFor) {
+        final CompletableFuture<Integer> exit = exits.of(containerName);
+        final Instant deadline = Instant.now().plusSeconds(container.getTimeoutSec());
+        final Duration probeTimeout = Duration.ofMillis(container.getProbeTimeoutMillis());
+        int attempt = 0;
+        while (true) {
+            Duration remaining = Duration.between(Instant.now(), deadline);
+            if (remaining.isNegative() || remaining.isZero()) {
+                throw new EnvironmentException(String.format("Timeout after %s sec waiting for %s", container.getTimeoutSec(), waitingFor));
+            }
+            if (exit.isDone()) {
+                throw containerExitedException(containerName, exit.getNow(null), exits, waitingFor);
+            }
+            attempt++;
+            try {
+                if (probe.apply(min(probeTimeout, remaining))) {
+                    return;
+                }
+            } catch (Exception e) {
+                log.debug(String.format("Probe %s failed while waiting for %s", attempt, waitingFor), e);
+            }
+            remaining = Duration.between(Instant.now(), deadline);
+            Duration delay = min(container.getPollStrategy().nextDelay(attempt), remaining);
+            try {
+                //wakes up as soon as the container exits
+                if (!delay.isNegative() && !delay.isZero()) {
+                    exit.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                //next probe
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EnvironmentException("Interrupted while waiting for " + waitingFor);
+            }
+        }
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    private EnvironmentException containerExitedException(String containerName, Integer exitCode, ContainerExits exits, String waitingFor) {
+        String reason = exits.isOutOfMemory(containerName) ? " (out of memory)" : "";
+        String logTail;
+        try {
+            LogTail tail = new LogTail(EXIT_LOG_TAIL_BYTES, EXIT_LOG_TAIL_LINES);
+            dockerClient.streamContainerLogs(containerName, tail);
+            logTail = tail.getText();
+        } catch (Exception e) {
+            logTail = "<logs are not available: " + e.getMessage() + ">";
+        }
+        return new EnvironmentException(String.format("Container %s exited with code %s%s while waiting for %s. Last log lines:%n%s",
+                containerName, exitCode, reason, waitingFor, logTail));
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (Exception e) {
+            log.debug("Failed to close " + closeable, e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes containers and networks left behind by sessions whose JVM was killed before the environments were cleaned up.
+ * Containers carry the session labels, see Session.labels. A session on this host is dead when its process no longer exists
+ * or its pid now belongs to a process started at another time.
+ * A session whose process cannot be checked, e.g. one on another host sharing the docker daemon, is kept unless a max age is set:
+ * it is then dead when its newest container is older than the max age, which also removes the containers of a live session
+ * that runs longer, such as a class rule or a container pool.
+ * Networks carry the session labels as driver options, they are found through them, and through the containers of the session
+ * and the session id in their names for networks created without them.
+ * Containers of shared environments are kept while live JVMs are attached to them, as told by the SharedEnvironmentRegistry
+ * whose directory is in their labels. They are never removed when the registry entry cannot be found.
+ */
+public class ResourceReaper implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ResourceReaper.class);
+
+    public static final Duration DEFAULT_PERIOD = Duration.ofMinutes(5);
+
+    private final DockerClientWrapper dockerClient;
+    private final Duration maxAge;//null to keep sessions whose process cannot be checked
+    private final Clock clock;
+    private final Function<String, Boolean> processAlive;
+    private final Function<String, String> processStartTime;
+    private final Function<Path, SharedEnvironmentRegistry> sharedRegistries;
+    private ScheduledExecutorService executor;
+
+    ResourceReaper(DockerClientWrapper dockerClient, Duration maxAge, Clock clock, Function<String, Boolean> processAlive,
+                   Function<String, String> processStartTime, Function<Path, SharedEnvironmentRegistry> sharedRegistries) {
+        this.dockerClient = dockerClient;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.processAlive = processAlive;
+        this.processStartTime = processStartTime;
+        this.sharedRegistries = sharedRegistries;
+    }
+
+    /**
+     * Makes one pass over the labeled containers
+     *
+     * @return number of removed containers
+     */
+    public int reap() {
+        Map<String, Boolean> sharedKept = new HashMap<>();
+        Set<String> sharedNetworks = new HashSet<>();
+        Map<String, List<ContainerState>> containersPerSession = dockerClient.listContainers(Session.SESSION_LABEL).stream()
+                .filter(c -> !Session.ID.equals(c.getLabels().get(Session.SESSION_LABEL)))
+                .filter(c -> {
+                    if (isSharedKept(c, sharedKept)) {
+                        sharedNetworks.add(c.getLabels().get(Environment.ENVIRONMENT_LABEL));
+                        return false;
+                    }
+                    return true;
+                })
+                .collect(Collectors.groupingBy(c -> c.getLabels().get(Session.SESSION_LABEL)));
+        int removed = 0;
+        for (Map.Entry<String, List<ContainerState>> session : containersPerSession.entrySet()) {
+            List<Map<String, String>> labels = session.getValue().stream().map(ContainerState::getLabels).collect(Collectors.toList());
+            if (isDead(labels)) {
+                removed += removeSession(session.getKey(), session.getValue(), sharedNetworks);
+            }
+        }
+        //sessions killed before creating a container, or whose containers are gone, are known by their networks only
+        Map<String, Map<String, Map<String, String>>> networksPerSession = listLabeledNetworksQuietly().entrySet().stream()
+                .filter(n -> !Session.ID.equals(n.getValue().get(Session.SESSION_LABEL)))
+                .filter(n -> !containersPerSession.containsKey(n.getValue().get(Session.SESSION_LABEL)))
+                .filter(n -> !sharedNetworks.contains(n.getKey()))
+                .collect(Collectors.groupingBy(n -> n.getValue().get(Session.SESSION_LABEL),
+                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        for (Map.Entry<String, Map<String, Map<String, String>>> session : networksPerSession.entrySet()) {
+            if (isDead(new ArrayList<>(session.getValue().values()))) {
+                log.info("Removing networks of dead session {}", session.getKey());
+                deleteNetworksQuietly(session.getValue().keySet());
+            }
+        }
+        return removed;
+    }
+
+    private Map<String, Map<String, String>> listLabeledNetworksQuietly() {
+        try {
+            return dockerClient.listLabeledNetworks(Session.SESSION_LABEL);
+        } catch (Exception e) {
+            log.debug("Failed to list the networks of sessions", e);
+            return new HashMap<>();
+        }
+    }
+
+    private boolean isSharedKept(ContainerState container, Map<String, Boolean> sharedKept) {
+        String key = container.getLabels().get(Environment.SHARED_LABEL);
+        if (key == null) {
+            return false;
+        }
+        String directory = container.getLabels().get(Environment.SHARED_REGISTRY_LABEL);
+        if (directory == null) {
+            return true;
+        }
+        return sharedKept.computeIfAbsent(directory + "/" + key, k -> {
+            try {
+                Boolean inUse = sharedRegistries.apply(Paths.get(directory)).isInUse(key);
+                //without an entry nothing tells whether the environment is still used
+                return inUse == null || inUse;
+            } catch (Exception e) {
+                log.debug("Failed to check shared environment " + key + " in " + directory, e);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @param resources labels of the containers or networks of one session
+     */
+    private boolean isDead(List<Map<String, String>> resources) {
+        Map<String, String> labels = resources.get(0);
+        String pid = labels.get(Session.PID_LABEL);
+        if (Session.HOST.equals(labels.get(Session.HOST_LABEL)) && pid != null && !pid.isEmpty()) {
+            Boolean alive = processAlive.apply(pid);
+            if (alive != null && alive && labels.get(Session.START_TIME_LABEL) != null) {
+                //in containers the JVM often gets the same pid on every run
+                String startTime = processStartTime.apply(pid);
+                return startTime != null && !startTime.equals(labels.get(Session.START_TIME_LABEL));
+            }
+            if (alive != null) {
+                return !alive;
+            }
+        }
+        if (maxAge == null) {
+            return false;
+        }
+        long newest = Long.MIN_VALUE;
+        for (Map<String, String> resource : resources) {
+            try {
+                newest = Math.max(newest, Long.parseLong(resource.get(Session.CREATED_LABEL)));
+            } catch (NumberFormatException e) {
+                //creation time unknown, the session cannot be told dead
+                return false;
+            }
+        }
+        return clock.millis() - newest > maxAge.toMillis();
+    }
+
+    private int removeSession(String session, List<ContainerState> containers, Set<String> keptNetworks) {
+        log.info("Removing {} containers of dead session {}", containers.size(), session);
+        int removed = 0;
+        Set<String> networks = new LinkedHashSet<>();
+        for (ContainerState container : containers) {
+            String network = container.getLabels().get(Environment.ENVIRONMENT_LABEL);
+            if (network != null) {
+                networks.add(network);
+            }
+            try {
+                if (container.isRunning()) {
+                    dockerClient.stopContainer(container.getName());
+                }
+                dockerClient.removeContainer(container.getName());
+                removed++;
+            } catch (Exception e) {
+                log.debug("Failed to remove container " + container.getName(), e);
+            }
+        }
+        try {
+            //network names end with "-<session>-<counter>", see EnvironmentFactory
+            networks.addAll(dockerClient.listNetworks("-" + session + "-"));
+        } catch (Exception e) {
+            log.debug("Failed to list networks of session " + session, e);
+        }
+        networks.removeAll(keptNetworks);
+        deleteNetworksQuietly(networks);
+        return removed;
+    }
+
+    private void deleteNetworksQuietly(Set<String> networks) {
+        for (String network : networks) {
+            try {
+                dockerClient.deleteNetwork(network);
+            } catch (Exception e) {
+                log.debug("Failed to delete network " + network, e);
+            }
+        }
+    }
+
+    private void reapQuietly() {
+        try {
+            reap();
+        } catch (Exception e) {
+            log.warn("Failed to reap resources of dead sessions", e);
+        }
+    }
+
+    /**
+     * Stops the background passes
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true if the process exists, null if that cannot be told on this system
+     */
+    static Boolean isProcessAlive(String pid) {
+        if (!Files.isDirectory(Paths.get("/proc"))) {
+            return null;
+        }
+        return Files.exists(Paths.get("/proc", pid));
+    }
+
+    public static ResourceReaperBuilder builder() {
+        return new ResourceReaperBuilder();
+    }
+
+    public static class ResourceReaperBuilder {
+        private DockerClientWrapper dockerClient;
+        private Duration maxAge;
+        private Duration period = DEFAULT_PERIOD;
+
+        private ResourceReaperBuilder() {
+        }
+
+        public ResourceReaperBuilder withDockerClientWrapper(DockerClientWrapper dockerClient) {
+            this.dockerClient = dockerClient;
+            return this;
+        }
+
+        /**
+         * Age after which a session whose process cannot be checked, e.g. one on another host, is considered dead.
+         * Not set by default: such sessions are never removed, since a live session running longer than the max age
+         * would lose its containers. Set it only when no session on the daemon outlives it.
+         */
+        public ResourceReaperBuilder withMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * Delay between two background passes
+         */
+        public ResourceReaperBuilder withPeriod(Duration period) {
+            this.period = period;
+            return this;
+        }
+
+        /**
+         * Builds the reaper and starts it: a first pass is made at once, the next ones in the background
+         */
+        public ResourceReaper build() {
+            if (dockerClient == null) {
+                throw new IllegalArgumentException("Docker client cannot be empty");
+            }
+            if ((maxAge != null && maxAge.isNegative()) || period == null || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Max age cannot be negative and period must be positive");
+            }
+            ResourceReaper reaper = new ResourceReaper(dockerClient, maxAge, Clock.systemUTC(), ResourceReaper::isProcessAlive,
+                    Session::processStartTime, SharedEnvironmentRegistry::at);
+            reaper.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dockerbay-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.executor.scheduleWithFixedDelay(reaper::reapQuietly, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+            return reaper;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Identifies this JVM among the ones that use the same docker host at the same time, e.g. surefire forks
+ */
+final class Session {
+
+    static final String SESSION_LABEL = "dockerbay.session";
+    static final String PID_LABEL = "dockerbay.pid";
+    static final String HOST_LABEL = "dockerbay.host";
+    static final String CREATED_LABEL = "dockerbay.created";
+    static final String START_TIME_LABEL = "dockerbay.start";
+
+    static final String ID = UUID.randomUUID().toString().substring(0, 8);
+
+    //runtime name is "pid@host" on the usual JVMs
+    private static final String RUNTIME_NAME = ManagementFactory.getRuntimeMXBean().getName();
+    static final String PID = RUNTIME_NAME.contains("@") ? RUNTIME_NAME.substring(0, RUNTIME_NAME.indexOf('@')) : "";
+    static final String HOST = RUNTIME_NAME.contains("@") ? RUNTIME_NAME.substring(RUNTIME_NAME.indexOf('@') + 1) : "";
+    //tells this process from a later one that reuses its pid, null if unknown
+    static final String START_TIME = processStartTime(PID);
+
+    private Session() {
+    }
+
+    /**
+     * @return start time of the process in clock ticks since boot, as found in /proc, or null if it cannot be read
+     */
+    static String processStartTime(String pid) {
+        if (pid == null || pid.isEmpty()) {
+            return null;
+        }
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc", pid, "stat")), StandardCharsets.US_ASCII);
+            //the command name in parentheses may contain spaces, the fields after it start with the state, the start time is the 20th
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return fields.length > 19 ? fields[19] : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return labels that tell which session created a resource and when, so that the ResourceReaper
+     * can find what is left behind by killed JVMs
+     */
+    static Map<String, String> labels() {
+        Map<String, String> labels = new HashMap<>();
+        labels.put(SESSION_LABEL, ID);
+        labels.put(PID_LABEL, PID);
+        labels.put(HOST_LABEL, HOST);
+        labels.put(CREATED_LABEL, String.valueOf(System.currentTimeMillis()));
+        if (START_TIME != null) {
+            labels.put(START_TIME_LABEL, START_TIME);
+        }
+        return labels;
+    }
+}
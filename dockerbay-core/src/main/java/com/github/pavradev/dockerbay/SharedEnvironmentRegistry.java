@@ -0,0 +1,205 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Host-local registry of the environments shared by the JVMs of one machine, e.g. surefire forks.
+ * Every shared environment has a properties file with its network, allocated ports and attached JVMs.
+ * Files are read and written only under an exclusive file lock, which the system releases if a JVM crashes.
+ * Attachments of processes that no longer exist are dropped whenever an entry is updated, a process is told apart from
+ * a later one with the same pid by its start time.
+ */
+public class SharedEnvironmentRegistry {
+
+    private static final String NETWORK_KEY = "network";
+    private static final String PORT_PREFIX = "port.";
+    private static final String ATTACHMENT_PREFIX = "attachment.";
+
+    //file locks are held by the JVM, threads of one JVM are excluded by these monitors
+    private static final Map<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Function<String, Boolean> processAlive;
+    private final Function<String, String> processStartTime;
+
+    /**
+     * Entry of one shared environment, valid only inside SharedEnvironmentRegistry.update
+     */
+    static class Entry {
+        private final Properties properties;
+        private final Function<String, Boolean> processAlive;
+        private final Function<String, String> processStartTime;
+
+        private Entry(Properties properties, Function<String, Boolean> processAlive, Function<String, String> processStartTime) {
+            this.properties = properties;
+            this.processAlive = processAlive;
+            this.processStartTime = processStartTime;
+        }
+
+        String getNetworkName() {
+            return properties.getProperty(NETWORK_KEY);
+        }
+
+        void setNetworkName(String networkName) {
+            properties.setProperty(NETWORK_KEY, networkName);
+        }
+
+        Map<String, Integer> getAllocatedPorts() {
+            Map<String, Integer> ports = new HashMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(PORT_PREFIX)) {
+                    ports.put(key.substring(PORT_PREFIX.length()), Integer.valueOf(properties.getProperty(key)));
+                }
+            }
+            return ports;
+        }
+
+        void setAllocatedPort(String containerName, Integer port) {
+            properties.setProperty(PORT_PREFIX + containerName, String.valueOf(port));
+        }
+
+        /**
+         * @param startTime start time of the process, see Session.processStartTime, null if unknown
+         */
+        void attach(String attachmentId, String pid, String startTime) {
+            properties.setProperty(ATTACHMENT_PREFIX + attachmentId, startTime != null ? pid + ":" + startTime : pid);
+        }
+
+        void detach(String attachmentId) {
+            properties.remove(ATTACHMENT_PREFIX + attachmentId);
+        }
+
+        /**
+         * Drops the attachments of processes that no longer exist, those that cannot be checked are kept
+         */
+        void pruneDeadAttachments() {
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(ATTACHMENT_PREFIX) && isDead(properties.getProperty(key))) {
+                    properties.remove(key);
+                }
+            }
+        }
+
+        private boolean isDead(String attachment) {
+            int separator = attachment.indexOf(':');
+            String pid = separator >= 0 ? attachment.substring(0, separator) : attachment;
+            Boolean alive = processAlive.apply(pid);
+            if (alive == null || !alive || separator < 0) {
+                return Boolean.FALSE.equals(alive);
+            }
+            //the pid may have been reused by another process since
+            String startTime = processStartTime.apply(pid);
+            return startTime != null && !startTime.equals(attachment.substring(separator + 1));
+        }
+
+        boolean hasAttachments() {
+            return properties.stringPropertyNames().stream().anyMatch(key -> key.startsWith(ATTACHMENT_PREFIX));
+        }
+
+        void clear() {
+            properties.clear();
+        }
+    }
+
+    SharedEnvironmentRegistry(Path directory, Function<String, Boolean> processAlive, Function<String, String> processStartTime) {
+        this.directory = directory;
+        this.processAlive = processAlive;
+        this.processStartTime = processStartTime;
+    }
+
+    public static SharedEnvironmentRegistry at(Path directory) {
+        return new SharedEnvironmentRegistry(directory, ResourceReaper::isProcessAlive, Session::processStartTime);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Registry in the dockerbay-registry directory of java.io.tmpdir
+     */
+    public static SharedEnvironmentRegistry atDefaultLocation() {
+        return at(Paths.get(System.getProperty("java.io.tmpdir"), "dockerbay-registry"));
+    }
+
+    /**
+     * Runs the action on the entry of the key while holding its lock, then stores the entry, even if the action fails.
+     * An empty entry is deleted.
+     */
+    <T> T update(String key, Function<Entry, T> action) {
+        Path lockFile = directory.resolve(key + ".lock");
+        Path entryFile = directory.resolve(key + ".properties");
+        synchronized (monitors.computeIfAbsent(lockFile.toAbsolutePath(), path -> new Object())) {
+            try {
+                Files.createDirectories(directory);
+                try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock lock = lockChannel.lock()) {
+                    Entry entry = new Entry(read(entryFile), processAlive, processStartTime);
+                    try {
+                        return action.apply(entry);
+                    } finally {
+                        write(entryFile, entry.properties);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to update shared environment " + key + " in " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Creates nothing when the key has no entry
+     *
+     * @return true if live JVMs are attached to the shared environment of the key, null if the key has no entry
+     */
+    Boolean isInUse(String key) {
+        if (!Files.exists(directory.resolve(key + ".properties"))) {
+            return null;
+        }
+        return update(key, entry -> {
+            entry.pruneDeadAttachments();
+            return entry.hasAttachments();
+        });
+    }
+
+    private static Properties read(Path entryFile) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(entryFile)) {
+            try (InputStream in = Files.newInputStream(entryFile)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void write(Path entryFile, Properties properties) throws IOException {
+        if (properties.isEmpty()) {
+            Files.deleteIfExists(entryFile);
+            return;
+        }
+        //written next to the entry and moved, a crash never leaves a half written entry
+        Path tempFile = entryFile.resolveSibling(entryFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = Channels.newOutputStream(channel)) {
+            properties.store(out, null);
+            channel.force(true);
+        }
+        Files.move(tempFile, entryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
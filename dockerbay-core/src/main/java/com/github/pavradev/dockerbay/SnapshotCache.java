@@ -0,0 +1,122 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local images of initialized containers.
+ * A snapshot is tagged with the container fingerprint and a key built from the base image id, cmd and environment variables,
+ * so it is not used anymore once the base image is updated.
+ * Data written to volumes declared by the base image is not part of the snapshot.
+ * Snapshots this cache has not used are removed once superseded by a snapshot of the same container runtime,
+ * or once they are older than the max age, e.g. after the container config changed. One cache is shared by the environments of a factory.
+ */
+class SnapshotCache {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCache.class);
+
+    static final String REPOSITORY = "dockerbay-snapshot";
+    private static final int FINGERPRINT_LENGTH = 16;
+    private static final int KEY_LENGTH = 40;
+
+    static final Duration DEFAULT_MAX_AGE = Duration.ofDays(7);
+
+    private final DockerClientWrapper dockerClient;
+    private final Duration maxAge;
+    private final Clock clock;
+    //snapshots found or taken by this cache, never stale for it
+    private final Set<String> currentSnapshots = ConcurrentHashMap.newKeySet();
+
+    SnapshotCache(DockerClientWrapper dockerClient) {
+        this(dockerClient, DEFAULT_MAX_AGE, Clock.systemUTC());
+    }
+
+    SnapshotCache(DockerClientWrapper dockerClient, Duration maxAge, Clock clock) {
+        this.dockerClient = dockerClient;
+        this.maxAge = maxAge;
+        this.clock = clock;
+    }
+
+    /**
+     * @return snapshot image to start the container from or null if there is none
+     */
+    public String find(ContainerConfig container) {
+        try {
+            String snapshot = getSnapshotImage(container);
+            if (snapshot != null && dockerClient.getImageId(snapshot) != null) {
+                log.info("Using snapshot {} for container {}", snapshot, container.getName());
+                currentSnapshots.add(snapshot);
+                return snapshot;
+            }
+        } catch (Exception e) {
+            log.warn(String.format("Failed to look up snapshot for container %s", container.getName()), e);
+        }
+        return null;
+    }
+
+    /**
+     * Commits the container and removes the stale snapshots.
+     * Failures are logged only since the environment can go on without a snapshot.
+     */
+    public void take(String containerName, ContainerConfig container) {
+        try {
+            String snapshot = getSnapshotImage(container);
+            if (snapshot == null) {
+                return;
+            }
+            log.info("Saving container {} as snapshot {}", containerName, snapshot);
+            dockerClient.commitContainer(containerName, REPOSITORY, getTag(snapshot));
+            currentSnapshots.add(snapshot);
+            removeStaleSnapshots(container);
+        } catch (Exception e) {
+            log.warn(String.format("Failed to save snapshot of container %s", containerName), e);
+        }
+    }
+
+    /**
+     * Snapshots of the same container runtime made for older base images are stale at once,
+     * the others once they are older than the max age: they may belong to other projects or to runs on other branches.
+     * Docker refuses to remove snapshots that containers still use.
+     */
+    private void removeStaleSnapshots(ContainerConfig container) {
+        String fingerprintPrefix = REPOSITORY + ":" + container.getFingerprint().substring(0, FINGERPRINT_LENGTH) + "-";
+        Instant oldest = clock.instant().minus(maxAge);
+        Map<String, Instant> images = dockerClient.listImages(REPOSITORY);
+        for (Map.Entry<String, Instant> entry : images.entrySet()) {
+            String image = entry.getKey();
+            if (currentSnapshots.contains(image)) {
+                continue;
+            }
+            boolean superseded = image.startsWith(fingerprintPrefix);
+            boolean expired = entry.getValue() != null && entry.getValue().isBefore(oldest);
+            if (superseded || expired) {
+                try {
+                    log.info("Removing stale snapshot {}", image);
+                    dockerClient.removeImage(image);
+                } catch (Exception e) {
+                    log.warn(String.format("Failed to remove stale snapshot %s", image), e);
+                }
+            }
+        }
+    }
+
+    private String getSnapshotImage(ContainerConfig container) {
+        String baseImageId = dockerClient.getImageId(container.getImage());
+        if (baseImageId == null) {
+            return null;
+        }
+        String fingerprint = container.getFingerprint();
+        String key = Digests.sha256Hex(baseImageId + "\n" + fingerprint);
+        return REPOSITORY + ":" + fingerprint.substring(0, FINGERPRINT_LENGTH) + "-" + key.substring(0, KEY_LENGTH);
+    }
+
+    private static String getTag(String image) {
+        return image.substring(image.lastIndexOf(':') + 1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.pavradev.dockerbay;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * Protocol check made once a TCP port accepts connections: an optional request is sent
+ * and the response received so far is tested until the predicate matches or the server closes the connection.
+ * Bytes are converted to a string as ISO-8859-1, so binary protocols can be checked byte by byte.
+ */
+public class TcpHandshake {
+    /**
+     * Responses longer than this are not read any further
+     */
+    public static final int MAX_RESPONSE_BYTES = 64 * 1024;
+
+    private final byte[] request;
+    private final Predicate<String> responsePredicate;
+
+    private TcpHandshake(byte[] request, Predicate<String> responsePredicate) {
+        if (responsePredicate == null) {
+            throw new IllegalArgumentException("Response predicate cannot be empty");
+        }
+        this.request = request;
+        this.responsePredicate = responsePredicate;
+    }
+
+    /**
+     * Sends the request as soon as the connection is established, for instance "PING\r\n"
+     */
+    public static TcpHandshake of(String request, Predicate<String> responsePredicate) {
+        return of(request.getBytes(StandardCharsets.ISO_8859_1), responsePredicate);
+    }
+
+    public static TcpHandshake of(byte[] request, Predicate<String> responsePredicate) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be empty");
+        }
+        return new TcpHandshake(request.clone(), responsePredicate);
+    }
+
+    /**
+     * Sends nothing and waits for the server to speak first, like SMTP or MySQL do
+     */
+    public static TcpHandshake greeting(Predicate<String> responsePredicate) {
+        return new TcpHandshake(new byte[0], responsePredicate);
+    }
+
+    byte[] getRequest() {
+        return request;
+    }
+
+    boolean matches(String response) {
+        return responsePredicate.test(response);
+    }
+}
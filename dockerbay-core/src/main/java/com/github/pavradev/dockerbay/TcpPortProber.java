@@ -0,0 +1,291 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for TCP ports to accept connections with non-blocking connects.
+ * A single selector thread makes the attempts, handshakes and poll delays of all the watched ports,
+ * so that waiting containers do not hold a thread each.
+ */
+class TcpPortProber implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TcpPortProber.class);
+
+    private static final int READ_BUFFER_BYTES = 4096;
+
+    private static class SharedHolder {
+        private static final TcpPortProber INSTANCE = new TcpPortProber("dockerbay-port-prober");
+    }
+
+    private static class Watch {
+        private final InetSocketAddress address;
+        private final TcpHandshake handshake;
+        private final long probeTimeoutNanos;
+        private final PollStrategy pollStrategy;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private int attempt;
+        private long nextAttemptNanos;
+        private long attemptDeadlineNanos;
+        private SocketChannel channel;
+        private ByteBuffer request;
+        private StringBuilder response;
+
+        private Watch(InetSocketAddress address, TcpHandshake handshake, Duration probeTimeout, PollStrategy pollStrategy) {
+            this.address = address;
+            this.handshake = handshake;
+            this.probeTimeoutNanos = probeTimeout.toNanos();
+            this.pollStrategy = pollStrategy;
+        }
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Watch> submitted = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    //touched by the selector thread only
+    private final PriorityQueue<Watch> delayed = new PriorityQueue<>(Comparator.comparingLong(w -> w.nextAttemptNanos));
+    private final Set<Watch> attempting = new HashSet<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+    TcpPortProber(String threadName) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open selector", e);
+        }
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return prober shared by all the environments of the JVM
+     */
+    static TcpPortProber shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Connects to the address until a connection is established and the handshake, if any, matches.
+     * Attempts that fail or last longer than the probe timeout are repeated after the poll strategy delay.
+     * Cancel the returned future to stop watching.
+     *
+     * @param handshake null if an accepted connection is enough
+     */
+    public CompletableFuture<Void> awaitOpen(InetSocketAddress address, TcpHandshake handshake, Duration probeTimeout, PollStrategy pollStrategy) {
+        Watch watch = new Watch(address, handshake, probeTimeout, pollStrategy);
+        if (closed) {
+            watch.result.completeExceptionally(new EnvironmentException("Port prober is closed"));
+            return watch.result;
+        }
+        submitted.add(watch);
+        //a cancelled watch releases its connection right away
+        watch.result.whenComplete((r, e) -> selector.wakeup());
+        selector.wakeup();
+        return watch.result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                long now = System.nanoTime();
+                acceptSubmitted(now);
+                startDueAttempts(now);
+                expireAttempts(now);
+                selector.select(selectTimeoutMillis(System.nanoTime()));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key, (Watch) key.attachment());
+                }
+            }
+        } catch (Throwable e) {
+            log.error("Port prober stopped unexpectedly", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void acceptSubmitted(long now) {
+        Watch watch;
+        while ((watch = submitted.poll()) != null) {
+            watch.nextAttemptNanos = now;
+            delayed.add(watch);
+        }
+    }
+
+    private void startDueAttempts(long now) {
+        while (!delayed.isEmpty() && delayed.peek().nextAttemptNanos - now <= 0) {
+            Watch watch = delayed.poll();
+            if (!watch.result.isDone()) {
+                startAttempt(watch, now);
+            }
+        }
+    }
+
+    private void expireAttempts(long now) {
+        for (Watch watch : new ArrayList<>(attempting)) {
+            if (watch.result.isDone()) {
+                finishAttempt(watch);
+            } else if (watch.attemptDeadlineNanos - now <= 0) {
+                retry(watch, "attempt timed out");
+            }
+        }
+    }
+
+    private long selectTimeoutMillis(long now) {
+        long nearest = Long.MAX_VALUE;
+        if (!delayed.isEmpty()) {
+            nearest = delayed.peek().nextAttemptNanos - now;
+        }
+        for (Watch watch : attempting) {
+            nearest = Math.min(nearest, watch.attemptDeadlineNanos - now);
+        }
+        if (nearest == Long.MAX_VALUE) {
+            //nothing to do until a watch is submitted
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nearest) + 1);
+    }
+
+    private void startAttempt(Watch watch, long now) {
+        watch.attempt++;
+        watch.attemptDeadlineNanos = now + watch.probeTimeoutNanos;
+        attempting.add(watch);
+        try {
+            watch.channel = SocketChannel.open();
+            watch.channel.configureBlocking(false);
+            if (watch.channel.connect(watch.address)) {
+                onConnected(watch);
+            } else {
+                watch.channel.register(selector, SelectionKey.OP_CONNECT, watch);
+            }
+        } catch (IOException e) {
+            retry(watch, e.toString());
+        }
+    }
+
+    private void handle(SelectionKey key, Watch watch) {
+        try {
+            if (watch.result.isDone()) {
+                finishAttempt(watch);
+            } else if (key.isConnectable()) {
+                if (watch.channel.finishConnect()) {
+                    onConnected(watch);
+                }
+            } else if (key.isWritable()) {
+                watch.channel.write(watch.request);
+                if (!watch.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                onReadable(watch);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            retry(watch, e.toString());
+        } catch (RuntimeException e) {
+            //a faulty handshake predicate is treated as a failed attempt, like a faulty readiness probe
+            retry(watch, e.toString());
+        }
+    }
+
+    private void onConnected(Watch watch) throws IOException {
+        if (watch.handshake == null) {
+            succeed(watch);
+            return;
+        }
+        watch.request = ByteBuffer.wrap(watch.handshake.getRequest());
+        watch.response = new StringBuilder();
+        int ops = watch.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        watch.channel.register(selector, ops, watch);
+    }
+
+    private void onReadable(Watch watch) throws IOException {
+        readBuffer.clear();
+        int read = watch.channel.read(readBuffer);
+        if (read < 0) {
+            retry(watch, "connection closed before the handshake matched");
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            //ISO-8859-1: one char per byte
+            watch.response.append((char) (readBuffer.get() & 0xff));
+        }
+        if (watch.handshake.matches(watch.response.toString())) {
+            succeed(watch);
+        } else if (watch.response.length() >= TcpHandshake.MAX_RESPONSE_BYTES) {
+            retry(watch, "response is too long without matching the handshake");
+        }
+    }
+
+    private void succeed(Watch watch) {
+        finishAttempt(watch);
+        log.debug("Port {} is open after {} attempts", watch.address, watch.attempt);
+        watch.result.complete(null);
+    }
+
+    private void retry(Watch watch, String reason) {
+        finishAttempt(watch);
+        if (watch.result.isDone()) {
+            return;
+        }
+        log.debug("Attempt {} to connect to {} failed: {}", watch.attempt, watch.address, reason);
+        watch.nextAttemptNanos = System.nanoTime() + watch.pollStrategy.nextDelay(watch.attempt).toNanos();
+        delayed.add(watch);
+    }
+
+    private void finishAttempt(Watch watch) {
+        attempting.remove(watch);
+        ReadinessChecker.closeQuietly(watch.channel);
+        watch.channel = null;
+        watch.request = null;
+        watch.response = null;
+    }
+
+    private void shutdown() {
+        List<Watch> remaining = new ArrayList<>(attempting);
+        remaining.addAll(delayed);
+        remaining.addAll(submitted);
+        attempting.clear();
+        delayed.clear();
+        submitted.clear();
+        for (Watch watch : remaining) {
+            finishAttempt(watch);
+            watch.result.completeExceptionally(new EnvironmentException("Port prober is closed"));
+        }
+        ReadinessChecker.closeQuietly(selector);
+    }
+}
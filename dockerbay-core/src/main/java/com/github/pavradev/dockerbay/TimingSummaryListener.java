@@ -0,0 +1,89 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates lifecycle timings per phase and subject, e.g. per image for pulls,
+ * and logs a summary when the JVM exits.
+ * Phases of the whole environment, such as NETWORK_CREATE, are aggregated per phase only since every environment has a unique name.
+ */
+public class TimingSummaryListener implements EnvironmentListener {
+    private static final Logger log = LoggerFactory.getLogger(TimingSummaryListener.class);
+
+    //upper bounds of the histogram buckets, the last bucket is unbounded
+    private static final long[] BUCKET_BOUNDS_MILLIS = {10, 50, 100, 500, 1000, 5000, 10000, 30000};
+
+    private final Map<String, Stats> statsPerKey = new ConcurrentHashMap<>();
+
+    public TimingSummaryListener() {
+        this(true);
+    }
+
+    TimingSummaryListener(boolean logOnExit) {
+        if (logOnExit) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> log.info(getSummary()), "dockerbay-timing-summary"));
+        }
+    }
+
+    @Override
+    public void onEvent(EnvironmentEvent event) {
+        String key = event.isEnvironmentLevel() ? event.getPhase().toString() : event.getPhase() + " " + event.getSubject();
+        Stats stats = statsPerKey.computeIfAbsent(key, k -> new Stats());
+        stats.record(event.getDuration().toMillis(), event.isSuccessful());
+    }
+
+    /**
+     * @return one line per phase and subject, or per phase for environment phases, slowest total first
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Dockerbay timing summary (ms):");
+        statsPerKey.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().getTotalMillis()).reversed())
+                .forEach(e -> summary.append(System.lineSeparator()).append(e.getKey()).append(": ").append(e.getValue()));
+        return summary.toString();
+    }
+
+    private static class Stats {
+        private long count;
+        private long failures;
+        private long totalMillis;
+        private long maxMillis;
+        private final long[] buckets = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+
+        synchronized void record(long millis, boolean successful) {
+            count++;
+            if (!successful) {
+                failures++;
+            }
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        synchronized long getTotalMillis() {
+            return totalMillis;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder histogram = new StringBuilder();
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > 0) {
+                    String bound = i < BUCKET_BOUNDS_MILLIS.length ? "<=" + BUCKET_BOUNDS_MILLIS[i] : ">" + BUCKET_BOUNDS_MILLIS[i - 1];
+                    histogram.append(' ').append(bound).append(':').append(buckets[i]);
+                }
+            }
+            return String.format("count=%d failed=%d total=%d mean=%d max=%d histogram=[%s]",
+                    count, failures, totalMillis, totalMillis / count, maxMillis, histogram.toString().trim());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class AdmissionSchedulerTest {
+
+    private final AdmissionScheduler scheduler = AdmissionScheduler.withBudget(3.0, 1024);
+
+    @Test
+    public void shouldQueueEnvironmentUntilResourcesAreReleased() throws Exception {
+        AdmissionScheduler.Admission first = scheduler.admit("first", 2, 512);
+
+        CompletableFuture<AdmissionScheduler.Admission> second = admitAsync("second", 2, 512);
+        assertStillWaiting(second);
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void shouldAdmitEnvironmentsThatFitTogether() throws Exception {
+        scheduler.admit("first", 1.5, 256);
+        scheduler.admit("second", 1.5, 768);
+
+        assertThat(scheduler.getQueueLength(), is(0));
+    }
+
+    @Test
+    public void shouldAdmitEnvironmentLargerThanBudgetAlone() throws Exception {
+        AdmissionScheduler.Admission first = scheduler.admit("first", 1, 128);
+
+        CompletableFuture<AdmissionScheduler.Admission> large = admitAsync("large", 8, 4096);
+        assertStillWaiting(large);
+
+        first.close();
+        large.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldAdmitInArrivalOrder() throws Exception {
+        AdmissionScheduler.Admission first = scheduler.admit("first", 2, 128);
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        CompletableFuture<AdmissionScheduler.Admission> large = admitAsync("large", 3, 128)
+                .whenComplete((a, e) -> admitted.add("large"));
+        waitUntilQueued(1);
+        CompletableFuture<AdmissionScheduler.Admission> small = admitAsync("small", 1, 128)
+                .whenComplete((a, e) -> admitted.add("small"));
+
+        //the small one would fit but must not overtake the large one
+        assertStillWaiting(small);
+
+        first.close();
+        large.get(5, TimeUnit.SECONDS).close();
+        small.get(5, TimeUnit.SECONDS);
+        assertThat(admitted.get(0), is("large"));
+    }
+
+    @Test
+    public void shouldReleaseOnlyOnce() throws Exception {
+        AdmissionScheduler.Admission first = scheduler.admit("first", 2, 128);
+        scheduler.admit("second", 1, 128);
+        first.close();
+        first.close();
+
+        CompletableFuture<AdmissionScheduler.Admission> third = admitAsync("third", 2, 128);
+        third.get(5, TimeUnit.SECONDS);
+        CompletableFuture<AdmissionScheduler.Admission> fourth = admitAsync("fourth", 1, 128);
+        assertStillWaiting(fourth);
+    }
+
+    @Test
+    public void shouldNotQueueEnvironmentWithoutLimits() throws Exception {
+        scheduler.admit("first", 3, 1024);
+
+        scheduler.admit("unlimited", 0, 0);
+    }
+
+    private CompletableFuture<AdmissionScheduler.Admission> admitAsync(String name, double cpus, long memoryMb) {
+        CompletableFuture<AdmissionScheduler.Admission> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(scheduler.admit(name, cpus, memoryMb));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private void waitUntilQueued(int queueLength) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getQueueLength() < queueLength && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(scheduler.getQueueLength(), is(queueLength));
+    }
+
+    private static void assertStillWaiting(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            throw new AssertionError("Environment was admitted");
+        } catch (TimeoutException e) {
+            //still waiting
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+public class AsyncDockerClientWrapperTest {
+
+    private DockerClientWrapper dockerClientWrapperMock;
+    private ExecutorService executor;
+    private AsyncDockerClientWrapper asyncDockerClient;
+
+    @Before
+    public void beforeMethod() {
+        dockerClientWrapperMock = mock(DockerClientWrapper.class);
+        executor = Executors.newSingleThreadExecutor();
+        asyncDockerClient = AsyncDockerClientWrapper.of(dockerClientWrapperMock, executor);
+    }
+
+    @After
+    public void afterMethod() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldCompleteWithResult() throws Exception {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        doReturn(portMapping).when(dockerClientWrapperMock).getPortMappings("container");
+
+        assertThat(asyncDockerClient.getPortMappings("container").get(10, TimeUnit.SECONDS), is(portMapping));
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyOnFailure() throws Exception {
+        DockerClientWrapperException error = new DockerClientWrapperException("failed");
+        doThrow(error).when(dockerClientWrapperMock).startContainer("container");
+
+        try {
+            asyncDockerClient.startContainer("container").get(10, TimeUnit.SECONDS);
+            fail("Should produce exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(error));
+        }
+    }
+}
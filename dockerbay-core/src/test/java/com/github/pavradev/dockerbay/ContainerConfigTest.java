@@ -3,6 +3,8 @@ package com.github.pavradev.dockerbay;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 
 import org.junit.Test;
@@ -32,8 +34,27 @@ public class ContainerConfigTest {
                 .build();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfWaitForPortWithoutExposedPort() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .waitForPort(true)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfDependsOnItself() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .dependsOn("name")
+                .build();
+    }
+
     @Test
     public void shouldBuildContainerWithParameters() {
+        PollStrategy pollStrategy = PollStrategy.fixed(Duration.ofMillis(100));
         ContainerConfig containerConfig = ContainerConfig.builder()
                 .withName("name")
                 .withImage("image")
@@ -44,6 +65,9 @@ public class ContainerConfigTest {
                 .displayLogs(true)
                 .waitForUrl("/url")
                 .waitTimeoutSec(100)
+                .dependsOn("otherContainer")
+                .probeTimeoutMillis(500)
+                .withPollStrategy(pollStrategy)
                 .build();
 
         assertThat(containerConfig.getName(), equalTo("name"));
@@ -55,6 +79,9 @@ public class ContainerConfigTest {
         assertThat(containerConfig.getDisplayLogs(), equalTo(true));
         assertThat(containerConfig.getWaitForUrl(), equalTo("/url"));
         assertThat(containerConfig.getTimeoutSec(), equalTo(100));
+        assertThat(containerConfig.getDependencies().contains("otherContainer"), equalTo(true));
+        assertThat(containerConfig.getProbeTimeoutMillis(), equalTo(500));
+        assertThat(containerConfig.getPollStrategy(), equalTo(pollStrategy));
     }
 
     @Test
@@ -66,4 +93,108 @@ public class ContainerConfigTest {
 
         assertThat(containerConfig.getTimeoutSec(), equalTo(ContainerConfig.DEFAULT_TIMEOUT_SEC));
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfPooledContainerHasDependencies() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .dependsOn("other")
+                .pooled(true)
+                .build();
+    }
+
+    @Test
+    public void shouldHaveSameFingerprintForSameRuntime() {
+        ContainerConfig first = ContainerConfig.builder()
+                .withName("first")
+                .withImage("image")
+                .withCmd(Arrays.asList("run", "--fast"))
+                .addToEnv("A", "1")
+                .addToEnv("B", "2")
+                .withExposedTcpPort(80)
+                .waitForLogEntry("started")
+                .build();
+        ContainerConfig second = ContainerConfig.builder()
+                .withName("second")
+                .withImage("image")
+                .withCmd(Arrays.asList("run", "--fast"))
+                .addToEnv("B", "2")
+                .addToEnv("A", "1")
+                .withExposedTcpPort(80)
+                .build();
+
+        assertThat(first.getFingerprint(), equalTo(second.getFingerprint()));
+    }
+
+    @Test
+    public void shouldHaveDifferentFingerprintForDifferentRuntime() {
+        ContainerConfig first = ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withCmd(Arrays.asList("a b"))
+                .build();
+        ContainerConfig second = ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withCmd(Arrays.asList("a", "b"))
+                .build();
+
+        assertThat(first.getFingerprint().equals(second.getFingerprint()), equalTo(false));
+    }
+
+    @Test
+    public void shouldBuildMountsInDockerFormat() {
+        ContainerConfig containerConfig = ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withTmpfs("/var/lib/postgresql/data", "512m")
+                .withTmpfs("/tmp")
+                .withBindMount(Paths.get("/etc/app"), "/config", true)
+                .withVolume("cache", "/cache")
+                .build();
+
+        assertThat(containerConfig.getTmpfs().get("/var/lib/postgresql/data"), equalTo("size=512m"));
+        assertThat(containerConfig.getTmpfs().get("/tmp"), equalTo(""));
+        assertThat(containerConfig.getBinds(), equalTo(Arrays.asList("/etc/app:/config:ro", "cache:/cache")));
+    }
+
+    @Test
+    public void shouldMountReadWriteWhenReadOnlyIsNull() {
+        ContainerConfig containerConfig = ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withBindMount(Paths.get("/etc/app"), "/config", null)
+                .build();
+
+        assertThat(containerConfig.getBinds(), equalTo(Arrays.asList("/etc/app:/config")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfPathIsMountedTwice() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withTmpfs("/data")
+                .withVolume("data", "/data")
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfMountPathIsRelative() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withTmpfs("data")
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowIfCpuLimitIsBelowDockerMinimum() {
+        ContainerConfig.builder()
+                .withName("name")
+                .withImage("image")
+                .withCpuLimit(0.001)
+                .build();
+    }
 }
@@ -0,0 +1,123 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContainerPoolTest {
+
+    private DockerClientWrapper dockerClientWrapperMock;
+    private ContainerPool pool;
+    private ContainerConfig config;
+
+    @Before
+    public void beforeMethod() {
+        dockerClientWrapperMock = mock(DockerClientWrapper.class);
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        doReturn(portMapping).when(dockerClientWrapperMock).getPortMappings(anyString());
+        config = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .withExposedTcpPort(1111)
+                .pooled(true)
+                .build();
+    }
+
+    @After
+    public void afterMethod() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldRefillAfterFirstLease() throws InterruptedException {
+        pool = ContainerPool.builder().withDockerClientWrapper(dockerClientWrapperMock).withSize(2).build();
+
+        assertThat(pool.lease(config), nullValue());
+        waitForWarmCount(2);
+
+        PooledContainer leased = pool.lease(config);
+        assertThat(leased, notNullValue());
+        assertThat(leased.getLocalPort(), is(2222));
+        waitForWarmCount(2);
+    }
+
+    @Test
+    public void shouldShareWarmContainersBetweenConfigsWithSameFingerprint() throws InterruptedException {
+        pool = ContainerPool.builder().withDockerClientWrapper(dockerClientWrapperMock).build();
+        pool.lease(config);
+        waitForWarmCount(1);
+
+        ContainerConfig sameRuntime = ContainerConfig.builder()
+                .withName("otherName")
+                .withImage("image")
+                .withExposedTcpPort(1111)
+                .build();
+
+        assertThat(pool.lease(sameRuntime), notNullValue());
+    }
+
+    @Test
+    public void shouldEvictIdleContainers() throws InterruptedException {
+        pool = ContainerPool.builder().withDockerClientWrapper(dockerClientWrapperMock).withMaxIdle(Duration.ofMillis(50)).build();
+        pool.lease(config);
+        waitForWarmCount(1);
+        Thread.sleep(100);
+
+        pool.evictIdle();
+
+        assertThat(pool.getWarmCount(config), is(0));
+        verify(dockerClientWrapperMock).removeContainer(anyString());
+    }
+
+    @Test
+    public void shouldNotKeepContainersThatFailedToWarmUp() throws InterruptedException {
+        ContainerConfig failingConfig = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .waitForLogEntry("started")
+                .waitTimeoutSec(0)
+                .build();
+        pool = ContainerPool.builder().withDockerClientWrapper(dockerClientWrapperMock).build();
+
+        pool.lease(failingConfig);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                verify(dockerClientWrapperMock).removeContainer(anyString());
+                break;
+            } catch (AssertionError e) {
+                Thread.sleep(10);
+            }
+        }
+        assertThat(pool.getWarmCount(failingConfig), is(0));
+        verify(dockerClientWrapperMock, never()).connectToNetwork(anyString(), anyString(), anyString());
+        verify(dockerClientWrapperMock).createContainer(anyObject());
+    }
+
+    private void waitForWarmCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getWarmCount(config) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getWarmCount(config), is(count));
+    }
+}
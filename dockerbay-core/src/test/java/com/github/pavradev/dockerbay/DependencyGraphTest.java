@@ -0,0 +1,58 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
+import org.junit.Test;
+
+public class DependencyGraphTest {
+
+    @Test
+    public void shouldReturnDependenciesAndDependents() {
+        DependencyGraph graph = DependencyGraph.of(Arrays.asList(
+                container("db"),
+                container("app", "db"),
+                container("proxy", "app", "db")));
+
+        assertThat(graph.getDependencies("proxy"), hasItems("app", "db"));
+        assertThat(graph.getDependents("db"), hasItems("app", "proxy"));
+        assertThat(graph.getDependents("proxy").isEmpty(), is(true));
+    }
+
+    @Test(expected = EnvironmentException.class)
+    public void shouldThrowIfDependencyUnknown() {
+        DependencyGraph.of(Arrays.asList(container("app", "db")));
+    }
+
+    @Test(expected = EnvironmentException.class)
+    public void shouldThrowIfContainerNameDuplicated() {
+        DependencyGraph.of(Arrays.asList(container("db"), container("db")));
+    }
+
+    @Test
+    public void shouldReportCycle() {
+        try {
+            DependencyGraph.of(Arrays.asList(
+                    container("first", "third"),
+                    container("second", "first"),
+                    container("third", "second")));
+            fail("Should detect cycle");
+        } catch (EnvironmentException e) {
+            assertThat(e.getMessage(), containsString("first -> third -> second -> first"));
+        }
+    }
+
+    private ContainerConfig container(String name, String... dependencies) {
+        return ContainerConfig.builder()
+                .withName(name)
+                .withImage("image")
+                .dependsOn(dependencies)
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EnvironmentFactoryTest {
+
+    @Test
+    public void shouldBuildDifferentNetworkNamesForTheSameId() {
+        assertThat(EnvironmentFactory.buildUniqueNetworkName("Test-method"),
+                not(EnvironmentFactory.buildUniqueNetworkName("Test-method")));
+    }
+
+    @Test
+    public void shouldIncludeIdAndSessionInNetworkName() {
+        String networkName = EnvironmentFactory.buildUniqueNetworkName("Test-method");
+
+        assertTrue(networkName.startsWith("Test-method-" + Session.ID + "-"));
+    }
+
+    @Test
+    public void shouldReplaceCharactersNotAllowedByDocker() {
+        String networkName = EnvironmentFactory.buildUniqueNetworkName("Test-method[0: a/b]");
+
+        assertThat(networkName.matches("[a-zA-Z0-9_.-]+"), is(true));
+    }
+}
@@ -2,32 +2,62 @@ package com.github.pavradev.dockerbay;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
 import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatcher;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 public class EnvironmentTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private Environment environment;
 
     private DockerClientWrapper dockerClientWrapperMock;
@@ -66,6 +96,53 @@ public class EnvironmentTest {
         verify(dockerClientWrapperMock).pullImage("requiredImage");
     }
 
+    @Test
+    public void shouldPullImagesConcurrently() {
+        CountDownLatch bothPullsStarted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            bothPullsStarted.countDown();
+            if (!bothPullsStarted.await(5, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Pulls were not concurrent");
+            }
+            return null;
+        }).when(dockerClientWrapperMock).pullImage(anyString());
+        environment.setPullConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("firstContainer")
+                        .withImage("firstImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("secondContainer")
+                        .withImage("secondImage")
+                        .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+    }
+
+    @Test
+    public void shouldStopPullingImagesAfterFirstFailure() {
+        doThrow(new RuntimeException("Fail!")).when(dockerClientWrapperMock).pullImage(eq("firstImage"));
+        environment.setPullConcurrency(1);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("firstContainer")
+                        .withImage("firstImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("secondContainer")
+                        .withImage("secondImage")
+                        .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        verify(dockerClientWrapperMock, never()).pullImage(eq("secondImage"));
+        verify(dockerClientWrapperMock, never()).createNetwork(anyString());
+    }
+
     @Test
     public void shouldStartContainersInOrder() {
         environment.setContainers(Arrays.asList(
@@ -106,11 +183,103 @@ public class EnvironmentTest {
         verify(dockerClientWrapperMock, never()).startContainer(eq("net-secondContainer"));
     }
 
+    @Test
+    public void shouldStartDependenciesFirst() {
+        environment.setStartConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("app")
+                        .withImage("requiredImage")
+                        .dependsOn("db")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("db")
+                        .withImage("requiredImage")
+                        .build()));
+
+        environment.initialize();
+
+        InOrder inOrder = Mockito.inOrder(dockerClientWrapperMock);
+        inOrder.verify(dockerClientWrapperMock).startContainer(eq("net-db"));
+        inOrder.verify(dockerClientWrapperMock).startContainer(eq("net-app"));
+    }
+
+    @Test
+    public void shouldStartIndependentContainersConcurrently() {
+        CountDownLatch bothContainersStarted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            bothContainersStarted.countDown();
+            if (!bothContainersStarted.await(5, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Containers were not started concurrently");
+            }
+            return null;
+        }).when(dockerClientWrapperMock).startContainer(anyString());
+        environment.setStartConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("firstContainer")
+                        .withImage("requiredImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("secondContainer")
+                        .withImage("requiredImage")
+                        .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+    }
+
+    @Test
+    public void shouldNotStartDependentIfDependencyFailed() {
+        doThrow(new RuntimeException("Fail!")).when(dockerClientWrapperMock).startContainer(eq("net-db"));
+        environment.setStartConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("db")
+                        .withImage("requiredImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("app")
+                        .withImage("requiredImage")
+                        .dependsOn("db")
+                        .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        verify(dockerClientWrapperMock, never()).createContainer(argThat(hasName("net-app")));
+    }
+
+    @Test(expected = EnvironmentException.class)
+    public void shouldRejectCyclicDependencies() {
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("first")
+                        .withImage("requiredImage")
+                        .dependsOn("second")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("second")
+                        .withImage("requiredImage")
+                        .dependsOn("first")
+                        .build()));
+    }
+
+    private ArgumentMatcher<CreateContainerRequest> hasName(String name) {
+        return new ArgumentMatcher<CreateContainerRequest>() {
+            @Override
+            public boolean matches(Object request) {
+                return name.equals(((CreateContainerRequest) request).getName());
+            }
+        };
+    }
+
     @Test
     public void shouldWaitForUrlIfNeeded() {
         Map<Integer, Integer> portMapping = new HashMap<>();
         portMapping.put(1111, 2222);
-        doReturn(portMapping).when(dockerClientWrapperMock).getPortMappings(anyString());
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
         Response response = mock(Response.class);
         doReturn(200).when(response).getStatus();
         mockHttpResponse(response);
@@ -127,19 +296,261 @@ public class EnvironmentTest {
         verify(httpClientMock).target("http://localhost:2222");
     }
 
-    private WebTarget mockHttpResponse(Response responseMock) {
+    @Test
+    public void shouldPollUrlUntilSuccessful() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+        Response notReady = mock(Response.class);
+        doReturn(503).when(notReady).getStatus();
+        Response ready = mock(Response.class);
+        doReturn(200).when(ready).getStatus();
+        Invocation.Builder builderMock = mockHttpResponse(notReady);
+        doReturn(notReady).doReturn(notReady).doReturn(ready).when(builderMock).get();
+
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .waitForUrl("/some/path")
+                .withPollStrategy(PollStrategy.fixed(Duration.ofMillis(10)))
+                .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+        verify(builderMock, times(3)).get();
+    }
+
+    @Test
+    public void shouldStopPollingAtDeadline() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+        Response notReady = mock(Response.class);
+        doReturn(503).when(notReady).getStatus();
+        mockHttpResponse(notReady);
+
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .waitForUrl("/some/path")
+                .waitTimeoutSec(1)
+                .withPollStrategy(PollStrategy.fixed(Duration.ofSeconds(5)))
+                .build()));
+
+        Instant start = Instant.now();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(Duration.between(start, Instant.now()).toMillis() < 3000, is(true));
+    }
+
+    @Test
+    public void shouldStopWaitingForUrlWhenContainerExits() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+        mockContainerLogs("Starting\nFatal error");
+        Response notReady = mock(Response.class);
+        doReturn(503).when(notReady).getStatus();
+        mockHttpResponse(notReady);
+        exitContainerOnStart(1);
+
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .waitForUrl("/some/path")
+                .build()));
+
+        Instant start = Instant.now();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(Duration.between(start, Instant.now()).toMillis() < 5000, is(true));
+        verify(dockerClientWrapperMock).streamContainerLogs(eq("net-dummyContainer"), anyObject());
+    }
+
+    @Test
+    public void shouldWriteFullLogsToLogDirectoryOnCleanup() throws Exception {
+        mockContainerLogs("Starting\nStarted");
+        Path logDirectory = temporaryFolder.getRoot().toPath().resolve("logs");
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .logDirectory(logDirectory)
+                .displayLogs(true)
+                .build()));
+        environment.initialize();
+
+        environment.cleanup();
+
+        byte[] logs = Files.readAllBytes(logDirectory.resolve("net-dummyContainer.log"));
+        assertThat(new String(logs, StandardCharsets.UTF_8), is("Starting\nStarted"));
+        verify(dockerClientWrapperMock, times(1)).streamContainerLogs(eq("net-dummyContainer"), anyObject());
+    }
+
+    @Test
+    public void shouldReturnLogTailOfContainer() {
+        mockContainerLogs("first\nsecond\nthird\n");
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .logTail(1024, 2)
+                .build()));
+        environment.initialize();
+
+        assertThat(environment.getLogTail("dummyContainer"), is("second\nthird\n"));
+    }
+
+    private void mockContainerLogs(String logs) {
+        doAnswer(invocation -> {
+            LogListener listener = (LogListener) invocation.getArguments()[1];
+            listener.onLogFrame(logs.getBytes(StandardCharsets.UTF_8));
+            listener.onComplete();
+            return null;
+        }).when(dockerClientWrapperMock).streamContainerLogs(anyString(), anyObject());
+    }
+
+    @Test
+    public void shouldStopWaitingForLogEntryWhenContainerExits() {
+        doReturn(mock(Closeable.class)).when(dockerClientWrapperMock).followContainerLogs(anyString(), anyObject());
+        exitContainerOnStart(137);
+
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .waitForLogEntry("Started!")
+                .build()));
+
+        Instant start = Instant.now();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(Duration.between(start, Instant.now()).toMillis() < 5000, is(true));
+    }
+
+    @Test
+    public void shouldWaitForPortAtResolvedLocalPort() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Map<Integer, Integer> portMapping = new HashMap<>();
+            portMapping.put(1111, server.getLocalPort());
+            mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+            environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                    .withName("dummyContainer")
+                    .withImage("requiredImage")
+                    .withExposedTcpPort(1111)
+                    .waitForPort(true)
+                    .build()));
+
+            environment.initialize();
+
+            assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+            verify(dockerClientWrapperMock).listContainers(Environment.ENVIRONMENT_LABEL, "net");
+        }
+    }
+
+    @Test
+    public void shouldStopWaitingForPortWhenContainerExits() throws Exception {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, closedPort());
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+        exitContainerOnStart(1);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .waitForPort(true)
+                .waitTimeoutSec(30)
+                .build()));
+
+        Instant start = Instant.now();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(Duration.between(start, Instant.now()).toMillis() < 5000, is(true));
+    }
+
+    @Test
+    public void shouldTimeOutWaitingForClosedPort() throws Exception {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, closedPort());
+        mockContainerStates(new ContainerState("net-dummyContainer", true, portMapping));
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .waitForPort(true)
+                .waitTimeoutSec(1)
+                .build()));
+
+        Instant start = Instant.now();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(Duration.between(start, Instant.now()).toMillis() >= 1000, is(true));
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void exitContainerOnStart(Integer exitCode) {
+        List<ContainerExitListener> exitListeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            exitListeners.add((ContainerExitListener) invocation.getArguments()[1]);
+            return mock(Closeable.class);
+        }).when(dockerClientWrapperMock).subscribeToContainerExits(anyObject(), anyObject());
+        doAnswer(invocation -> {
+            exitListeners.forEach(l -> l.onContainerExit((String) invocation.getArguments()[0], exitCode, false));
+            return null;
+        }).when(dockerClientWrapperMock).startContainer(anyString());
+    }
+
+    private Invocation.Builder mockHttpResponse(Response responseMock) {
         WebTarget webTargetMock = mock(WebTarget.class);
         doReturn(webTargetMock).when(httpClientMock).target(anyString());
         doReturn(webTargetMock).when(webTargetMock).path(anyString());
+        doReturn(webTargetMock).when(webTargetMock).property(anyString(), anyObject());
         Invocation.Builder builderMock = mock(Invocation.Builder.class);
         doReturn(builderMock).when(webTargetMock).request();
         doReturn(responseMock).when(builderMock).get();
-        return webTargetMock;
+        return builderMock;
     }
 
     @Test
     public void shouldWaitForLogIfNeeded() {
-        doReturn("Service Started!").when(dockerClientWrapperMock).getContainerLogs(anyString());
+        doAnswer(invocation -> {
+            LogListener listener = (LogListener) invocation.getArguments()[1];
+            listener.onLogFrame("Service Sta".getBytes());
+            listener.onLogFrame("rted!".getBytes());
+            return mock(Closeable.class);
+        }).when(dockerClientWrapperMock).followContainerLogs(anyString(), anyObject());
+
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .waitForLogEntry("Started!")
+                .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+        verify(dockerClientWrapperMock).followContainerLogs(eq("net-dummyContainer"), anyObject());
+    }
+
+    @Test
+    public void shouldFailIfLogStreamEndsBeforeLogEntry() {
+        doAnswer(invocation -> {
+            LogListener listener = (LogListener) invocation.getArguments()[1];
+            listener.onLogFrame("Fatal error".getBytes());
+            listener.onComplete();
+            return mock(Closeable.class);
+        }).when(dockerClientWrapperMock).followContainerLogs(anyString(), anyObject());
 
         environment.setContainers(Arrays.asList(ContainerConfig.builder()
                 .withName("dummyContainer")
@@ -149,7 +560,7 @@ public class EnvironmentTest {
 
         environment.initialize();
 
-        verify(dockerClientWrapperMock).getContainerLogs("net-dummyContainer");
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
     }
 
     @Test
@@ -179,6 +590,98 @@ public class EnvironmentTest {
         environment.cleanup();
     }
 
+    @Test
+    public void shouldNotAllowInitializeAndCleanupWhileInitializing() throws InterruptedException {
+        CountDownLatch pulling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            pulling.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(dockerClientWrapperMock).pullImage("requiredImage");
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .build()));
+        Thread initializer = new Thread(environment::initialize);
+        initializer.start();
+        pulling.await(10, TimeUnit.SECONDS);
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZING));
+        assertFails(environment::initialize);
+        assertFails(environment::cleanup);
+
+        release.countDown();
+        initializer.join(10000);
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+    }
+
+    @Test
+    public void shouldInitializeAndCleanupAsynchronously() throws Exception {
+        CompletableFuture<Environment> initialized = environment.initializeAsync();
+
+        assertThat(initialized.get(10, TimeUnit.SECONDS), is(environment));
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+        environment.cleanupAsync().get(10, TimeUnit.SECONDS);
+        assertThat(environment.getStatus(), is(Environment.Status.CLEANED));
+    }
+
+    @Test
+    public void shouldFailInitializeAsyncIfEnvironmentIsPartiallyInitialized() throws Exception {
+        doThrow(new RuntimeException("no network")).when(dockerClientWrapperMock).createNetwork(anyString());
+
+        try {
+            environment.initializeAsync().get(10, TimeUnit.SECONDS);
+            fail("Should produce exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause() instanceof EnvironmentException, is(true));
+        }
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+    }
+
+    @Test
+    public void shouldStopAndCleanupWhenInitializeAsyncIsCancelled() throws Exception {
+        CountDownLatch pulling = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            pulling.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }).when(dockerClientWrapperMock).pullImage("requiredImage");
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .build()));
+
+        CompletableFuture<Environment> initialized = environment.initializeAsync();
+        pulling.await(10, TimeUnit.SECONDS);
+        initialized.cancel(true);
+
+        assertThat(interrupted.await(10, TimeUnit.SECONDS), is(true));
+        waitForStatus(Environment.Status.CLEANED);
+        verify(dockerClientWrapperMock, never()).createNetwork(anyString());
+    }
+
+    private void waitForStatus(Environment.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!status.equals(environment.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(environment.getStatus(), is(status));
+    }
+
+    private void assertFails(Runnable action) {
+        try {
+            action.run();
+            fail("Should produce exception");
+        } catch (EnvironmentException e) {
+        }
+    }
+
     @Test
     public void shouldDeleteNetwork() {
         environment.initialize();
@@ -239,5 +742,592 @@ public class EnvironmentTest {
         verify(dockerClientWrapperMock).removeContainer(eq("net-firstContainer"));
     }
 
+    @Test
+    public void shouldStopContainersConcurrently() {
+        CountDownLatch bothContainersStopping = new CountDownLatch(2);
+        //cleanup swallows stop failures, a sequential stop is recorded instead
+        AtomicBoolean stoppedSequentially = new AtomicBoolean(false);
+        doAnswer(invocation -> {
+            bothContainersStopping.countDown();
+            if (!bothContainersStopping.await(5, TimeUnit.SECONDS)) {
+                stoppedSequentially.set(true);
+            }
+            return null;
+        }).when(dockerClientWrapperMock).stopContainer(anyString());
+        environment.setStopConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("firstContainer")
+                        .withImage("requiredImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("secondContainer")
+                        .withImage("requiredImage")
+                        .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        assertThat(stoppedSequentially.get(), is(false));
+        verify(dockerClientWrapperMock).removeContainer(eq("net-firstContainer"));
+        verify(dockerClientWrapperMock).removeContainer(eq("net-secondContainer"));
+    }
 
+    @Test
+    public void shouldRemoveDependentsBeforeTheirDependencies() {
+        environment.setStopConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("db")
+                        .withImage("requiredImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("app")
+                        .withImage("requiredImage")
+                        .dependsOn("db")
+                        .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        InOrder inOrder = Mockito.inOrder(dockerClientWrapperMock);
+        inOrder.verify(dockerClientWrapperMock).removeContainer(eq("net-app"));
+        inOrder.verify(dockerClientWrapperMock).stopContainer(eq("net-db"));
+        inOrder.verify(dockerClientWrapperMock).removeContainer(eq("net-db"));
+        inOrder.verify(dockerClientWrapperMock).deleteNetwork(eq("net"));
+    }
+
+    @Test
+    public void shouldRemoveAllContainersWithOneBulkCallInForceMode() {
+        environment.setCleanupMode(Environment.CleanupMode.FORCE);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("firstContainer")
+                        .withImage("requiredImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("secondContainer")
+                        .withImage("requiredImage")
+                        .dependsOn("firstContainer")
+                        .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        InOrder inOrder = Mockito.inOrder(dockerClientWrapperMock);
+        inOrder.verify(dockerClientWrapperMock).forceRemoveContainers(Environment.ENVIRONMENT_LABEL, "net");
+        inOrder.verify(dockerClientWrapperMock).deleteNetwork("net");
+        verify(dockerClientWrapperMock, never()).stopContainer(anyString());
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+        assertThat(environment.getStatus(), is(Environment.Status.CLEANED));
+    }
+
+    @Test
+    public void shouldDeleteNetworkIfBulkRemovalFails() {
+        doThrow(new RuntimeException("Fail!")).when(dockerClientWrapperMock).forceRemoveContainers(anyString(), anyString());
+        environment.setCleanupMode(Environment.CleanupMode.FORCE);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        verify(dockerClientWrapperMock).deleteNetwork("net");
+        assertThat(environment.getStatus(), is(Environment.Status.CLEANED));
+    }
+
+    @Test
+    public void shouldRemoveLeasedContainerSeparatelyInForceMode() {
+        ContainerPool poolMock = mock(ContainerPool.class);
+        doReturn(new PooledContainer("pooled-1", 2222, Instant.now(), null)).when(poolMock).lease(anyObject());
+        environment.setContainerPool(poolMock);
+        environment.setCleanupMode(Environment.CleanupMode.FORCE);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .pooled(true)
+                .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        verify(dockerClientWrapperMock).removeContainer("pooled-1");
+        verify(dockerClientWrapperMock).forceRemoveContainers(Environment.ENVIRONMENT_LABEL, "net");
+    }
+
+    @Test
+    public void shouldLeasePooledContainerInsteadOfCreatingIt() {
+        ContainerPool poolMock = mock(ContainerPool.class);
+        doReturn(new PooledContainer("pooled-1", 2222, Instant.now(), null)).when(poolMock).lease(anyObject());
+        environment.setContainerPool(poolMock);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .pooled(true)
+                .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        assertThat(environment.getAllocatedPort("dummyContainer"), is(2222));
+        verify(dockerClientWrapperMock, never()).createContainer(anyObject());
+        verify(dockerClientWrapperMock).connectToNetwork("pooled-1", "net", "dummyContainer");
+        verify(dockerClientWrapperMock).removeContainer("pooled-1");
+    }
+
+    @Test
+    public void shouldCreatePooledContainerIfPoolHasNoWarmOne() {
+        ContainerPool poolMock = mock(ContainerPool.class);
+        environment.setContainerPool(poolMock);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .pooled(true)
+                .build()));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).startContainer("net-dummyContainer");
+    }
+
+    @Test
+    public void shouldStartFromSnapshotIfPresent() {
+        SnapshotCache snapshotCacheMock = mock(SnapshotCache.class);
+        doReturn("dockerbay-snapshot:tag").when(snapshotCacheMock).find(anyObject());
+        environment.setSnapshotCache(snapshotCacheMock);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .snapshot(true)
+                .build()));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).createContainer(argThat(hasImage("dockerbay-snapshot:tag")));
+        verify(snapshotCacheMock, never()).take(anyString(), anyObject());
+    }
+
+    @Test
+    public void shouldTakeSnapshotOnceReady() {
+        SnapshotCache snapshotCacheMock = mock(SnapshotCache.class);
+        environment.setSnapshotCache(snapshotCacheMock);
+        ContainerConfig config = ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .snapshot(true)
+                .build();
+        environment.setContainers(Arrays.asList(config));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).createContainer(argThat(hasImage("requiredImage")));
+        verify(snapshotCacheMock).take("net-dummyContainer", config);
+    }
+
+    @Test
+    public void shouldResolveAllPortsInOneCall() {
+        Map<Integer, Integer> firstPortMapping = new HashMap<>();
+        firstPortMapping.put(1111, 2222);
+        Map<Integer, Integer> secondPortMapping = new HashMap<>();
+        secondPortMapping.put(1111, 3333);
+        mockContainerStates(new ContainerState("net-first", true, firstPortMapping),
+                new ContainerState("net-second", true, secondPortMapping));
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder().withName("first").withImage("requiredImage").withExposedTcpPort(1111).build(),
+                ContainerConfig.builder().withName("second").withImage("requiredImage").withExposedTcpPort(1111).build()));
+
+        environment.initialize();
+
+        assertThat(environment.getAllocatedPort("first"), is(2222));
+        assertThat(environment.getAllocatedPort("second"), is(3333));
+        verify(dockerClientWrapperMock, times(1)).listContainers(Environment.ENVIRONMENT_LABEL, "net");
+        verify(dockerClientWrapperMock, never()).getPortMappings(anyString());
+    }
+
+    @Test
+    public void shouldLabelContainersWithEnvironment() {
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .build()));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).createContainer(argThat(new ArgumentMatcher<CreateContainerRequest>() {
+            @Override
+            public boolean matches(Object request) {
+                return "net".equals(((CreateContainerRequest) request).getLabels().get(Environment.ENVIRONMENT_LABEL));
+            }
+        }));
+    }
+
+    @Test
+    public void shouldReportTimedEventsForEachPhase() {
+        List<EnvironmentEvent> events = new CopyOnWriteArrayList<>();
+        environment.addListener(events::add);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        List<String> phases = events.stream().map(e -> e.getPhase() + " " + e.getSubject()).collect(Collectors.toList());
+        assertThat(phases, is(Arrays.asList(
+                "IMAGE_PULL requiredImage",
+                "NETWORK_CREATE net",
+                "CONTAINER_CREATE dummyContainer",
+                "CONTAINER_START dummyContainer",
+                "READINESS_WAIT dummyContainer",
+                "PORT_RESOLUTION net",
+                "CONTAINER_STOP dummyContainer",
+                "CONTAINER_REMOVE dummyContainer",
+                "NETWORK_DELETE net")));
+        assertThat(events.stream().allMatch(EnvironmentEvent::isSuccessful), is(true));
+    }
+
+    @Test
+    public void shouldReportFailedPhase() {
+        RuntimeException error = new RuntimeException("failed");
+        doThrow(error).when(dockerClientWrapperMock).stopContainer(anyString());
+        List<EnvironmentEvent> events = new CopyOnWriteArrayList<>();
+        environment.addListener(events::add);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("dummyContainer")
+                .withImage("requiredImage")
+                .build()));
+
+        environment.initialize();
+        environment.cleanup();
+
+        EnvironmentEvent stopEvent = events.stream()
+                .filter(e -> EnvironmentEvent.Phase.CONTAINER_STOP.equals(e.getPhase()))
+                .findFirst().get();
+        assertThat(stopEvent.isSuccessful(), is(false));
+        assertThat(stopEvent.getError(), is(error));
+    }
+
+    @Test
+    public void shouldNotStartLazyContainerUntilAskedFor() {
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("eager")
+                        .withImage("eagerImage")
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("lazy")
+                        .withImage("lazyImage")
+                        .lazy(true)
+                        .build()));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+        verify(dockerClientWrapperMock).createContainer(argThat(hasName("net-eager")));
+        verify(dockerClientWrapperMock, never()).createContainer(argThat(hasName("net-lazy")));
+        verify(dockerClientWrapperMock, never()).pullImage("lazyImage");
+    }
+
+    @Test
+    public void shouldStartLazyContainerOnFirstPortRequest() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-lazy", true, portMapping));
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("lazy")
+                .withImage("lazyImage")
+                .withExposedTcpPort(1111)
+                .lazy(true)
+                .build()));
+        environment.initialize();
+
+        assertThat(environment.getAllocatedPort("lazy"), is(2222));
+        assertThat(environment.getAllocatedPort("lazy"), is(2222));
+
+        verify(dockerClientWrapperMock, times(1)).createContainer(argThat(hasName("net-lazy")));
+        verify(dockerClientWrapperMock, times(1)).startContainer("net-lazy");
+    }
+
+    @Test
+    public void shouldStartLazyDependenciesFirst() {
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("db")
+                        .withImage("requiredImage")
+                        .lazy(true)
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("app")
+                        .withImage("requiredImage")
+                        .dependsOn("db")
+                        .lazy(true)
+                        .build()));
+        environment.initialize();
+
+        environment.ensureStarted("app");
+
+        InOrder inOrder = Mockito.inOrder(dockerClientWrapperMock);
+        inOrder.verify(dockerClientWrapperMock).startContainer("net-db");
+        inOrder.verify(dockerClientWrapperMock).startContainer("net-app");
+    }
+
+    @Test
+    public void shouldStartLazyContainerWithEagerDependent() {
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("db")
+                        .withImage("requiredImage")
+                        .lazy(true)
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("app")
+                        .withImage("requiredImage")
+                        .dependsOn("db")
+                        .build()));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).startContainer("net-db");
+        verify(dockerClientWrapperMock).startContainer("net-app");
+    }
+
+    @Test
+    public void shouldNotRetryFailedLazyContainer() {
+        doThrow(new RuntimeException("Fail!")).when(dockerClientWrapperMock).startContainer("net-lazy");
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("lazy")
+                .withImage("requiredImage")
+                .lazy(true)
+                .build()));
+        environment.initialize();
+
+        assertFails(() -> environment.ensureStarted("lazy"));
+        assertFails(() -> environment.ensureStarted("lazy"));
+
+        verify(dockerClientWrapperMock, times(1)).createContainer(argThat(hasName("net-lazy")));
+        environment.cleanup();
+        verify(dockerClientWrapperMock).removeContainer("net-lazy");
+    }
+
+    @Test
+    public void shouldRetryLazyContainerCancelledBecauseOfFailedSibling() {
+        CountDownLatch slowStarting = new CountDownLatch(1);
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        AtomicBoolean firstStart = new AtomicBoolean(true);
+        //like the daemon, a name cannot be created twice until removed
+        Set<String> created = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            String name = ((CreateContainerRequest) invocation.getArguments()[0]).getName();
+            if (!created.add(name)) {
+                throw new DockerClientWrapperException("Conflict, name " + name + " is already in use");
+            }
+            return null;
+        }).when(dockerClientWrapperMock).createContainer(anyObject());
+        doAnswer(invocation -> created.remove(invocation.getArguments()[0])).when(dockerClientWrapperMock).removeContainer(anyString());
+        doAnswer(invocation -> {
+            slowStarting.await();
+            throw new RuntimeException("Fail!");
+        }).when(dockerClientWrapperMock).startContainer("net-broken");
+        doAnswer(invocation -> {
+            if (firstStart.getAndSet(false)) {
+                slowStarting.countDown();
+                //cancelled by the failure of the sibling
+                neverReleased.await();
+            }
+            return null;
+        }).when(dockerClientWrapperMock).startContainer("net-slow");
+        environment.setStartConcurrency(2);
+        environment.setContainers(Arrays.asList(
+                ContainerConfig.builder()
+                        .withName("broken")
+                        .withImage("requiredImage")
+                        .lazy(true)
+                        .build(),
+                ContainerConfig.builder()
+                        .withName("slow")
+                        .withImage("requiredImage")
+                        .lazy(true)
+                        .build()));
+        environment.initialize();
+
+        assertFails(() -> environment.ensureStarted("broken", "slow"));
+        environment.ensureStarted("slow");
+        assertFails(() -> environment.ensureStarted("broken"));
+
+        verify(dockerClientWrapperMock, times(1)).startContainer("net-broken");
+        verify(dockerClientWrapperMock, times(2)).createContainer(argThat(hasName("net-slow")));
+        verify(dockerClientWrapperMock).removeContainer("net-slow");
+    }
+
+    @Test
+    public void shouldNotStartLazyContainerAfterCleanup() {
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("lazy")
+                .withImage("requiredImage")
+                .lazy(true)
+                .build()));
+        environment.initialize();
+        environment.cleanup();
+
+        assertFails(() -> environment.ensureStarted("lazy"));
+        verify(dockerClientWrapperMock, never()).createContainer(anyObject());
+    }
+
+    @Test
+    public void shouldAttachToSharedEnvironmentStartedByOtherEnvironment() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-db", true, portMapping));
+        SharedEnvironmentRegistry registry = new SharedEnvironmentRegistry(temporaryFolder.getRoot().toPath(), pid -> true, pid -> null);
+        Environment first = sharedEnvironment(registry, "net");
+        Environment second = sharedEnvironment(registry, "other");
+
+        first.initialize();
+        second.initialize();
+
+        verify(dockerClientWrapperMock, times(1)).createContainer(anyObject());
+        verify(dockerClientWrapperMock, never()).createNetwork("other");
+        assertThat(second.getAllocatedPort("db"), is(2222));
+        assertThat(second.buildUniqueContainerName("db"), is("net-db"));
+
+        first.cleanup();
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+        verify(dockerClientWrapperMock, never()).deleteNetwork(anyString());
+
+        second.cleanup();
+        verify(dockerClientWrapperMock).forceRemoveContainers(Environment.ENVIRONMENT_LABEL, "net");
+        verify(dockerClientWrapperMock).deleteNetwork("net");
+    }
+
+    @Test
+    public void shouldRestartSharedEnvironmentLeftByDeadProcess() {
+        SharedEnvironmentRegistry registry = new SharedEnvironmentRegistry(temporaryFolder.getRoot().toPath(), pid -> !"999".equals(pid), pid -> null);
+        Environment first = sharedEnvironment(registry, "net");
+        first.initialize();
+        //attach the same registry entry to a process that died
+        registry.update(first.getSharedKey(), entry -> {
+            entry.clear();
+            entry.setNetworkName("dead");
+            entry.attach("dead-1", "999", null);
+            return null;
+        });
+        Environment second = sharedEnvironment(registry, "other");
+
+        second.initialize();
+
+        verify(dockerClientWrapperMock).forceRemoveContainers(Environment.ENVIRONMENT_LABEL, "dead");
+        verify(dockerClientWrapperMock).deleteNetwork("dead");
+        verify(dockerClientWrapperMock).createNetwork("other");
+        verify(dockerClientWrapperMock).createContainer(argThat(hasName("other-db")));
+    }
+
+    @Test
+    public void shouldRestartSharedEnvironmentWhoseContainersAreGone() {
+        Map<Integer, Integer> portMapping = new HashMap<>();
+        portMapping.put(1111, 2222);
+        mockContainerStates(new ContainerState("net-db", true, portMapping));
+        SharedEnvironmentRegistry registry = new SharedEnvironmentRegistry(temporaryFolder.getRoot().toPath(), pid -> true, pid -> null);
+        Environment first = sharedEnvironment(registry, "net");
+        first.initialize();
+        //e.g. removed by hand while the first JVM is still attached
+        mockContainerStates(new ContainerState("net-db", false, portMapping));
+        Environment second = sharedEnvironment(registry, "other");
+
+        second.initialize();
+
+        verify(dockerClientWrapperMock).forceRemoveContainers(Environment.ENVIRONMENT_LABEL, "net");
+        verify(dockerClientWrapperMock).deleteNetwork("net");
+        verify(dockerClientWrapperMock).createNetwork("other");
+        verify(dockerClientWrapperMock).createContainer(argThat(hasName("other-db")));
+        assertThat(second.buildUniqueContainerName("db"), is("other-db"));
+    }
+
+    @Test
+    public void shouldPassMountsToContainerRequest() {
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("db")
+                .withImage("requiredImage")
+                .withTmpfs("/var/lib/postgresql/data", "512m")
+                .withVolume("cache", "/cache")
+                .build()));
+
+        environment.initialize();
+
+        verify(dockerClientWrapperMock).createContainer(argThat(new ArgumentMatcher<CreateContainerRequest>() {
+            @Override
+            public boolean matches(Object argument) {
+                CreateContainerRequest request = (CreateContainerRequest) argument;
+                return "size=512m".equals(request.getTmpfs().get("/var/lib/postgresql/data"))
+                        && request.getBinds().equals(Arrays.asList("cache:/cache"));
+            }
+        }));
+    }
+
+    @Test
+    public void shouldWaitForAdmissionAndReleaseItOnCleanup() throws Exception {
+        AdmissionScheduler scheduler = AdmissionScheduler.withBudget(1.0, null);
+        List<EnvironmentEvent> events = new CopyOnWriteArrayList<>();
+        environment.addListener(events::add);
+        environment.setAdmissionScheduler(scheduler);
+        environment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("db")
+                .withImage("requiredImage")
+                .withCpuLimit(1.0)
+                .withMemoryLimitMb(256)
+                .build()));
+
+        environment.initialize();
+
+        assertThat(events.get(0).getPhase(), is(EnvironmentEvent.Phase.ADMISSION_WAIT));
+        CompletableFuture<AdmissionScheduler.Admission> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.admit("next", 1.0, 0);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertThat(next.isDone(), is(false));
+
+        environment.cleanup();
+        next.get(5, TimeUnit.SECONDS);
+        verify(dockerClientWrapperMock).createContainer(argThat(new ArgumentMatcher<CreateContainerRequest>() {
+            @Override
+            public boolean matches(Object argument) {
+                CreateContainerRequest request = (CreateContainerRequest) argument;
+                return Double.valueOf(1.0).equals(request.getCpuLimit()) && Integer.valueOf(256).equals(request.getMemoryLimitMb());
+            }
+        }));
+    }
+
+    private Environment sharedEnvironment(SharedEnvironmentRegistry registry, String networkName) {
+        Environment sharedEnvironment = new Environment(dockerClientWrapperMock, httpClientMock);
+        sharedEnvironment.setNetworkName(networkName);
+        sharedEnvironment.setSharedRegistry(registry, "shared");
+        sharedEnvironment.setContainers(Arrays.asList(ContainerConfig.builder()
+                .withName("db")
+                .withImage("requiredImage")
+                .withExposedTcpPort(1111)
+                .build()));
+        return sharedEnvironment;
+    }
+
+    private void mockContainerStates(ContainerState... states) {
+        doReturn(Arrays.asList(states)).when(dockerClientWrapperMock).listContainers(Environment.ENVIRONMENT_LABEL, "net");
+    }
+
+    private ArgumentMatcher<CreateContainerRequest> hasImage(String image) {
+        return new ArgumentMatcher<CreateContainerRequest>() {
+            @Override
+            public boolean matches(Object request) {
+                return image.equals(((CreateContainerRequest) request).getImage());
+            }
+        };
+    }
 }
@@ -0,0 +1,132 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpReadinessProbeTest {
+
+    private WebTarget webTargetMock;
+    private Invocation.Builder builderMock;
+    private Response responseMock;
+    private HttpReadinessProbe httpReadinessProbe;
+
+    @Before
+    public void beforeMethod() {
+        Client httpClientMock = mock(Client.class);
+        webTargetMock = mock(WebTarget.class);
+        doReturn(webTargetMock).when(httpClientMock).target(anyString());
+        doReturn(webTargetMock).when(webTargetMock).path(anyString());
+        doReturn(webTargetMock).when(webTargetMock).property(anyString(), anyObject());
+        builderMock = mock(Invocation.Builder.class);
+        doReturn(builderMock).when(webTargetMock).request();
+        responseMock = mock(Response.class);
+        doReturn(responseMock).when(builderMock).get();
+        doReturn(responseMock).when(builderMock).head();
+        httpReadinessProbe = new HttpReadinessProbe(httpClientMock);
+    }
+
+    @Test
+    public void shouldAcceptAnySuccessfulStatusByDefault() throws IOException {
+        doReturn(204).when(responseMock).getStatus();
+
+        assertThat(probe(HttpProbe.defaultProbe()), is(true));
+        verify(responseMock).close();
+    }
+
+    @Test
+    public void shouldRejectUnexpectedStatusAndDrainResponse() throws IOException {
+        doReturn(503).when(responseMock).getStatus();
+        InputStream entity = mockEntity("not yet");
+
+        assertThat(probe(HttpProbe.defaultProbe()), is(false));
+        assertThat(entity.available(), is(0));
+        verify(responseMock).close();
+    }
+
+    @Test
+    public void shouldUseExpectedStatuses() throws IOException {
+        doReturn(401).when(responseMock).getStatus();
+
+        assertThat(probe(HttpProbe.builder().withExpectedStatuses(401).build()), is(true));
+    }
+
+    @Test
+    public void shouldUseHead() throws IOException {
+        doReturn(200).when(responseMock).getStatus();
+
+        probe(HttpProbe.builder().withMethod(HttpProbe.Method.HEAD).build());
+
+        verify(builderMock).head();
+        verify(builderMock, never()).get();
+    }
+
+    @Test
+    public void shouldCheckBody() throws IOException {
+        doReturn(200).when(responseMock).getStatus();
+        mockEntity("{\"status\":\"DOWN\"}");
+
+        assertThat(probe(HttpProbe.builder().withBodyPredicate(body -> body.contains("UP")).build()), is(false));
+    }
+
+    @Test
+    public void shouldSetProbeTimeouts() throws IOException {
+        doReturn(200).when(responseMock).getStatus();
+
+        probe(HttpProbe.defaultProbe());
+
+        verify(webTargetMock).property(ClientProperties.CONNECT_TIMEOUT, 500);
+        verify(webTargetMock).property(ClientProperties.READ_TIMEOUT, 500);
+    }
+
+    @Test
+    public void shouldCloseResponseIfBodyCannotBeRead() {
+        doReturn(200).when(responseMock).getStatus();
+        doReturn(true).when(responseMock).hasEntity();
+        doThrow(new IllegalStateException("broken")).when(responseMock).readEntity(InputStream.class);
+
+        try {
+            probe(HttpProbe.defaultProbe());
+        } catch (Exception e) {
+        }
+
+        verify(responseMock).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotCheckBodyOfHead() {
+        HttpProbe.builder().withMethod(HttpProbe.Method.HEAD).withBodyPredicate(body -> true).build();
+    }
+
+    private boolean probe(HttpProbe probe) throws IOException {
+        return httpReadinessProbe.probe("http://localhost:2222", "/health", probe, Duration.ofMillis(500));
+    }
+
+    private InputStream mockEntity(String body) {
+        InputStream entity = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        doReturn(true).when(responseMock).hasEntity();
+        doReturn(entity).when(responseMock).readEntity(InputStream.class);
+        return entity;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+public class ImageResolverTest {
+
+    private DockerClientWrapper dockerClientWrapperMock;
+    private Map<String, Instant> verifiedImages;
+    private Instant now;
+
+    @Before
+    public void beforeMethod() {
+        dockerClientWrapperMock = mock(DockerClientWrapper.class);
+        verifiedImages = new HashMap<>();
+        now = Instant.parse("2017-01-01T10:00:00Z");
+    }
+
+    @Test
+    public void shouldPullEveryTimeWithAlwaysPolicy() {
+        ImageResolver resolver = resolver(ImagePullPolicy.always());
+
+        resolver.resolve("image");
+        resolver.resolve("image");
+
+        verify(dockerClientWrapperMock, times(2)).pullImage("image");
+    }
+
+    @Test
+    public void shouldPullImageOnceForResolversOfDifferentFactories() throws Exception {
+        Map<String, Instant> sharedVerifiedImages = new ConcurrentHashMap<>();
+        AtomicInteger pulls = new AtomicInteger();
+        doAnswer(invocation -> {
+            pulls.incrementAndGet();
+            Thread.sleep(300);
+            return null;
+        }).when(dockerClientWrapperMock).pullImage("resolver-shared-image");
+        Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+        ImageResolver first = new ImageResolver(dockerClientWrapperMock, ImagePullPolicy.ifMissing(), sharedVerifiedImages, clock);
+        ImageResolver second = new ImageResolver(dockerClientWrapperMock, ImagePullPolicy.ifMissing(), sharedVerifiedImages, clock);
+
+        CompletableFuture<Void> firstResolve = CompletableFuture.runAsync(() -> first.resolve("resolver-shared-image"));
+        CompletableFuture<Void> secondResolve = CompletableFuture.runAsync(() -> second.resolve("resolver-shared-image"));
+        CompletableFuture.allOf(firstResolve, secondResolve).get(10, TimeUnit.SECONDS);
+
+        assertThat(pulls.get(), is(1));
+    }
+
+    @Test
+    public void shouldNotPullPresentImageWithIfMissingPolicy() {
+        doReturn(true).when(dockerClientWrapperMock).isImagePresent("image");
+
+        resolver(ImagePullPolicy.ifMissing()).resolve("image");
+
+        verify(dockerClientWrapperMock, never()).pullImage("image");
+    }
+
+    @Test
+    public void shouldPullMissingImageOnceWithIfMissingPolicy() {
+        ImageResolver resolver = resolver(ImagePullPolicy.ifMissing());
+
+        resolver.resolve("image");
+        resolver.resolve("image");
+
+        verify(dockerClientWrapperMock, times(1)).isImagePresent("image");
+        verify(dockerClientWrapperMock, times(1)).pullImage("image");
+    }
+
+    @Test
+    public void shouldNotPullPresentDigestPinnedImageWithAlwaysPolicy() {
+        String image = "image@sha256:abc";
+        doReturn(true).when(dockerClientWrapperMock).isImagePresent(image);
+
+        resolver(ImagePullPolicy.always()).resolve(image);
+
+        verify(dockerClientWrapperMock, never()).pullImage(image);
+    }
+
+    @Test
+    public void shouldPullAgainAfterTtl() {
+        ImageResolver resolver = resolver(ImagePullPolicy.ifOlderThan(Duration.ofMinutes(10)));
+        resolver.resolve("image:latest");
+        now = now.plus(Duration.ofMinutes(5));
+        resolver(ImagePullPolicy.ifOlderThan(Duration.ofMinutes(10))).resolve("image:latest");
+        verify(dockerClientWrapperMock, times(1)).pullImage("image:latest");
+
+        now = now.plus(Duration.ofMinutes(6));
+        resolver(ImagePullPolicy.ifOlderThan(Duration.ofMinutes(10))).resolve("image:latest");
+        verify(dockerClientWrapperMock, times(2)).pullImage("image:latest");
+    }
+
+    @Test
+    public void shouldUseLocalImageIfPullFails() {
+        doThrow(new DockerClientWrapperException("offline")).when(dockerClientWrapperMock).pullImage("image");
+        doReturn(true).when(dockerClientWrapperMock).isImagePresent("image");
+
+        resolver(ImagePullPolicy.always()).resolve("image");
+    }
+
+    @Test(expected = DockerClientWrapperException.class)
+    public void shouldFailIfPullFailsAndImageIsMissing() {
+        doThrow(new DockerClientWrapperException("offline")).when(dockerClientWrapperMock).pullImage("image");
+
+        resolver(ImagePullPolicy.always()).resolve("image");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowNegativeTtl() {
+        ImagePullPolicy.ifOlderThan(Duration.ofSeconds(-1));
+    }
+
+    private ImageResolver resolver(ImagePullPolicy policy) {
+        return new ImageResolver(dockerClientWrapperMock, policy, verifiedImages, Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
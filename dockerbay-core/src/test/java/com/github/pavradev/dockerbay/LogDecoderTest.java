@@ -0,0 +1,49 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LogDecoderTest {
+
+    @Test
+    public void shouldDecodeCharactersSplitBetweenFrames() {
+        byte[] log = "Grüße € 😀".getBytes(StandardCharsets.UTF_8);
+        LogDecoder decoder = new LogDecoder();
+        StringBuilder text = new StringBuilder();
+        for (byte b : log) {
+            decoder.decode(new byte[]{b}, text);
+        }
+        decoder.finish(text);
+
+        assertThat(text.toString(), is("Grüße € 😀"));
+    }
+
+    @Test
+    public void shouldDecodeFramesLargerThanCharBuffer() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            expected.append("é");
+        }
+        LogDecoder decoder = new LogDecoder();
+        StringBuilder text = new StringBuilder();
+        decoder.decode(expected.toString().getBytes(StandardCharsets.UTF_8), text);
+        decoder.finish(text);
+
+        assertThat(text.toString(), is(expected.toString()));
+    }
+
+    @Test
+    public void shouldReplaceIncompleteCharacterAtEndOfStream() {
+        byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+        LogDecoder decoder = new LogDecoder();
+        StringBuilder text = new StringBuilder();
+        decoder.decode(new byte[]{'a', euro[0], euro[1]}, text);
+        decoder.finish(text);
+
+        assertThat(text.toString(), is("a�"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LogEntryMatcherTest {
+
+    @Test
+    public void shouldFindEntryInSingleFrame() {
+        LogEntryMatcher matcher = new LogEntryMatcher("Started!");
+        assertThat(matcher.feed(bytes("Service Started!\n")), is(true));
+    }
+
+    @Test
+    public void shouldNotFindMissingEntry() {
+        LogEntryMatcher matcher = new LogEntryMatcher("Started!");
+        assertThat(matcher.feed(bytes("Service Starting")), is(false));
+        assertThat(matcher.isFound(), is(false));
+    }
+
+    @Test
+    public void shouldFindEntrySplitBetweenFrames() {
+        LogEntryMatcher matcher = new LogEntryMatcher("Started!");
+        assertThat(matcher.feed(bytes("Service St")), is(false));
+        assertThat(matcher.feed(bytes("ar")), is(false));
+        assertThat(matcher.feed(bytes("ted!")), is(true));
+    }
+
+    @Test
+    public void shouldFindEntryAfterPartialMatch() {
+        LogEntryMatcher matcher = new LogEntryMatcher("aab");
+        assertThat(matcher.feed(bytes("a")), is(false));
+        assertThat(matcher.feed(bytes("aa")), is(false));
+        assertThat(matcher.feed(bytes("b")), is(true));
+    }
+
+    @Test
+    public void shouldFindMultiByteEntrySplitInsideCharacter() {
+        byte[] log = bytes("Сервис запущен");
+        LogEntryMatcher matcher = new LogEntryMatcher("запущен");
+        assertThat(matcher.feed(Arrays.copyOfRange(log, 0, 15)), is(false));
+        assertThat(matcher.feed(Arrays.copyOfRange(log, 15, log.length)), is(true));
+    }
+
+    @Test
+    public void shouldStayFoundForFollowingFrames() {
+        LogEntryMatcher matcher = new LogEntryMatcher("Started!");
+        matcher.feed(bytes("Started!"));
+        assertThat(matcher.feed(bytes("something else")), is(true));
+    }
+
+    private byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
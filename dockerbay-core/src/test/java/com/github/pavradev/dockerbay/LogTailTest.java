@@ -0,0 +1,73 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LogTailTest {
+
+    @Test
+    public void shouldKeepWholeLogIfItFits() {
+        LogTail tail = new LogTail(1024, 10);
+        tail.onLogFrame(bytes("first\n"));
+        tail.onLogFrame(bytes("second\n"));
+
+        assertThat(tail.getText(), is("first\nsecond\n"));
+        assertThat(tail.isTruncated(), is(false));
+    }
+
+    @Test
+    public void shouldKeepLastLines() {
+        LogTail tail = new LogTail(1024, 2);
+        tail.onLogFrame(bytes("first\nsecond\nthird"));
+
+        assertThat(tail.getText(), is("second\nthird"));
+    }
+
+    @Test
+    public void shouldDropLineCutByRingBuffer() {
+        LogTail tail = new LogTail(16, 10);
+        tail.onLogFrame(bytes("first line\n"));
+        tail.onLogFrame(bytes("second line\n"));
+        tail.onLogFrame(bytes("third\n"));
+
+        assertThat(tail.isTruncated(), is(true));
+        assertThat(tail.getText(), is("third\n"));
+    }
+
+    @Test
+    public void shouldKeepEndOfFrameLargerThanRingBuffer() {
+        LogTail tail = new LogTail(8, 10);
+        tail.onLogFrame(bytes("abc"));
+        tail.onLogFrame(bytes("0123456789\nxyz"));
+
+        assertThat(tail.getText(), is("xyz"));
+    }
+
+    @Test
+    public void shouldDropCharacterCutByRingBuffer() {
+        LogTail tail = new LogTail(5, 10);
+        //"é" takes two bytes, only its second byte is left in the ring buffer
+        tail.onLogFrame(bytes("xxé"));
+        tail.onLogFrame(bytes("abcd"));
+
+        assertThat(tail.getText(), is("abcd"));
+    }
+
+    @Test
+    public void shouldDecodeCharacterSplitBetweenFrames() {
+        byte[] euro = bytes("€");
+        LogTail tail = new LogTail(1024, 10);
+        tail.onLogFrame(new byte[]{euro[0]});
+        tail.onLogFrame(new byte[]{euro[1], euro[2], '!'});
+
+        assertThat(tail.getText(), is("€!"));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
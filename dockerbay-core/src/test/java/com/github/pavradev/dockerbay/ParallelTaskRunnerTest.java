@@ -0,0 +1,101 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ParallelTaskRunnerTest {
+
+    @Test
+    public void shouldReturnResultsInOrderOfTasks() {
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 2, false);
+        runner.addTask("first", () -> {
+        });
+        runner.addTask("second", () -> {
+            throw new RuntimeException("Fail!");
+        });
+
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+
+        assertThat(results.get(0).getName(), is("first"));
+        assertThat(results.get(0).getOutcome(), is(ParallelTaskRunner.Outcome.SUCCEEDED));
+        assertThat(results.get(1).getName(), is("second"));
+        assertThat(results.get(1).getOutcome(), is(ParallelTaskRunner.Outcome.FAILED));
+        assertThat(results.get(1).getError().getMessage(), is("Fail!"));
+    }
+
+    @Test
+    public void shouldCancelRunningTasksOnFailureInFailFastMode() {
+        CountDownLatch blockedTaskStarted = new CountDownLatch(1);
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 2, true);
+        runner.addTask("blocked", () -> {
+            blockedTaskStarted.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        runner.addTask("failing", () -> {
+            try {
+                blockedTaskStarted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Fail!");
+        });
+
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+
+        assertThat(results.get(0).getOutcome(), is(ParallelTaskRunner.Outcome.CANCELLED));
+        assertThat(results.get(1).getOutcome(), is(ParallelTaskRunner.Outcome.FAILED));
+    }
+
+    @Test
+    public void shouldNotStartQueuedTasksAfterFailureInFailFastMode() {
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 1, true);
+        runner.addTask("failing", () -> {
+            throw new RuntimeException("Fail!");
+        });
+        runner.addTask("queued", () -> {
+        });
+
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+
+        assertThat(results.get(1).getOutcome(), is(ParallelTaskRunner.Outcome.CANCELLED));
+    }
+
+    @Test
+    public void shouldRunTaskAfterItsPrerequisites() {
+        List<String> executionOrder = new CopyOnWriteArrayList<>();
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 3, false);
+        runner.addTask("last", Arrays.asList("first", "second"), () -> executionOrder.add("last"));
+        runner.addTask("second", Arrays.asList("first"), () -> executionOrder.add("second"));
+        runner.addTask("first", () -> executionOrder.add("first"));
+
+        runner.run();
+
+        assertThat(executionOrder, is(Arrays.asList("first", "second", "last")));
+    }
+
+    @Test
+    public void shouldCancelDependentTasksOnFailureInFailFastMode() {
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 2, true);
+        runner.addTask("failing", () -> {
+            throw new RuntimeException("Fail!");
+        });
+        runner.addTask("dependent", Arrays.asList("failing"), () -> {
+        });
+
+        List<ParallelTaskRunner.TaskResult> results = runner.run();
+
+        assertThat(results.get(1).getOutcome(), is(ParallelTaskRunner.Outcome.CANCELLED));
+    }
+}
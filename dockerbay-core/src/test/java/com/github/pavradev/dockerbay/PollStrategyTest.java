@@ -0,0 +1,49 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class PollStrategyTest {
+
+    @Test
+    public void shouldAlwaysReturnSameDelayForFixedStrategy() {
+        PollStrategy strategy = PollStrategy.fixed(Duration.ofMillis(200));
+        assertThat(strategy.nextDelay(1), is(Duration.ofMillis(200)));
+        assertThat(strategy.nextDelay(10), is(Duration.ofMillis(200)));
+    }
+
+    @Test
+    public void shouldDoubleDelayUpToMaximum() {
+        PollStrategy strategy = PollStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofMillis(500), 0);
+        assertThat(strategy.nextDelay(1), is(Duration.ofMillis(100)));
+        assertThat(strategy.nextDelay(2), is(Duration.ofMillis(200)));
+        assertThat(strategy.nextDelay(3), is(Duration.ofMillis(400)));
+        assertThat(strategy.nextDelay(4), is(Duration.ofMillis(500)));
+        assertThat(strategy.nextDelay(1000), is(Duration.ofMillis(500)));
+    }
+
+    @Test
+    public void shouldKeepJitteredDelayWithinBounds() {
+        PollStrategy strategy = PollStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofMillis(100), 0.5);
+        for (int i = 0; i < 100; i++) {
+            long delay = strategy.nextDelay(1).toMillis();
+            assertThat(delay >= 50 && delay <= 100, is(true));
+        }
+    }
+
+    @Test
+    public void shouldStartFastAndSlowDownToOneSecond() {
+        PollStrategy strategy = PollStrategy.fastStart();
+        assertThat(strategy.nextDelay(1), is(Duration.ofMillis(50)));
+        assertThat(strategy.nextDelay(100), is(Duration.ofSeconds(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidJitter() {
+        PollStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofMillis(500), 2);
+    }
+}
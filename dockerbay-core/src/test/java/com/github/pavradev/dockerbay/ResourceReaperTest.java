@@ -0,0 +1,246 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceReaperTest {
+
+    private static final Instant NOW = Instant.parse("2017-06-01T12:00:00Z");
+
+    private DockerClientWrapper dockerClientWrapperMock;
+    private Map<String, Boolean> processes;
+    private Map<String, String> startTimes;
+    private SharedEnvironmentRegistry sharedRegistry;
+    private ResourceReaper reaper;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeMethod() {
+        dockerClientWrapperMock = mock(DockerClientWrapper.class);
+        doReturn(Collections.emptyList()).when(dockerClientWrapperMock).listNetworks(anyString());
+        processes = new HashMap<>();
+        startTimes = new HashMap<>();
+        sharedRegistry = new SharedEnvironmentRegistry(temporaryFolder.getRoot().toPath(), processes::get, pid -> null);
+        reaper = new ResourceReaper(dockerClientWrapperMock, Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC), processes::get, startTimes::get,
+                directory -> new SharedEnvironmentRegistry(directory, processes::get, pid -> null));
+    }
+
+    @Test
+    public void shouldRemoveContainersAndNetworksOfDeadProcess() {
+        processes.put("111", false);
+        doReturn(Arrays.asList(
+                container("a-dead0001-1-db", true, labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1")),
+                container("a-dead0001-1-app", false, labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+        doReturn(Arrays.asList("b-dead0001-2")).when(dockerClientWrapperMock).listNetworks("-dead0001-");
+
+        int removed = reaper.reap();
+
+        assertThat(removed, is(2));
+        verify(dockerClientWrapperMock).stopContainer("a-dead0001-1-db");
+        verify(dockerClientWrapperMock, never()).stopContainer("a-dead0001-1-app");
+        verify(dockerClientWrapperMock).removeContainer("a-dead0001-1-db");
+        verify(dockerClientWrapperMock).removeContainer("a-dead0001-1-app");
+        verify(dockerClientWrapperMock).deleteNetwork("a-dead0001-1");
+        verify(dockerClientWrapperMock).deleteNetwork("b-dead0001-2");
+    }
+
+    @Test
+    public void shouldKeepContainersOfLiveProcess() {
+        processes.put("222", true);
+        doReturn(Arrays.asList(container("a-live0001-1-db", true, labels("live0001", "222", Session.HOST, NOW.minus(Duration.ofDays(1)), "a-live0001-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(0));
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+    }
+
+    @Test
+    public void shouldKeepContainersOfOwnSession() {
+        processes.put(Session.PID, false);
+        doReturn(Arrays.asList(container("a-own-1-db", true, labels(Session.ID, Session.PID, Session.HOST, NOW.minus(Duration.ofDays(1)), "a-own-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(0));
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+    }
+
+    @Test
+    public void shouldRemoveContainersOfOtherHostOnlyAfterMaxAge() {
+        doReturn(Arrays.asList(
+                container("a-old00001-1-db", false, labels("old00001", "111", "other-host", NOW.minus(Duration.ofHours(2)), "a-old00001-1")),
+                container("a-new00001-1-db", false, labels("new00001", "111", "other-host", NOW.minus(Duration.ofMinutes(10)), "a-new00001-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(1));
+        verify(dockerClientWrapperMock).removeContainer("a-old00001-1-db");
+        verify(dockerClientWrapperMock, never()).removeContainer("a-new00001-1-db");
+    }
+
+    @Test
+    public void shouldUseAgeIfProcessCannotBeChecked() {
+        doReturn(Arrays.asList(container("a-old00001-1-db", false, labels("old00001", "333", Session.HOST, NOW.minus(Duration.ofHours(2)), "a-old00001-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(1));
+    }
+
+    @Test
+    public void shouldKeepContainersOfOtherHostWithoutMaxAge() {
+        reaper = new ResourceReaper(dockerClientWrapperMock, null, Clock.fixed(NOW, ZoneOffset.UTC), processes::get, startTimes::get,
+                directory -> new SharedEnvironmentRegistry(directory, processes::get, pid -> null));
+        doReturn(Arrays.asList(
+                container("a-old00001-1-db", false, labels("old00001", "111", "other-host", NOW.minus(Duration.ofDays(2)), "a-old00001-1")),
+                container("a-old00002-1-db", false, labels("old00002", "333", Session.HOST, NOW.minus(Duration.ofDays(2)), "a-old00002-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(0));
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+    }
+
+    @Test
+    public void shouldRemoveContainersOfProcessWhosePidWasReused() {
+        processes.put("111", true);
+        processes.put("222", true);
+        startTimes.put("111", "6000");
+        startTimes.put("222", "7000");
+        Map<String, String> reusedLabels = labels("old00001", "111", Session.HOST, NOW, "a-old00001-1");
+        reusedLabels.put(Session.START_TIME_LABEL, "5000");
+        Map<String, String> liveLabels = labels("live0001", "222", Session.HOST, NOW, "a-live0001-1");
+        liveLabels.put(Session.START_TIME_LABEL, "7000");
+        doReturn(Arrays.asList(
+                container("a-old00001-1-db", false, reusedLabels),
+                container("a-live0001-1-db", false, liveLabels)))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(1));
+        verify(dockerClientWrapperMock).removeContainer("a-old00001-1-db");
+        verify(dockerClientWrapperMock, never()).removeContainer("a-live0001-1-db");
+    }
+
+    @Test
+    public void shouldDeleteNetworksOfDeadSessionWithoutContainers() {
+        processes.put("111", false);
+        processes.put("222", true);
+        Map<String, Map<String, String>> networks = new HashMap<>();
+        networks.put("a-dead0001-1", labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1"));
+        networks.put("a-live0001-1", labels("live0001", "222", Session.HOST, NOW, "a-live0001-1"));
+        networks.put("a-own-1", labels(Session.ID, "111", Session.HOST, NOW, "a-own-1"));
+        doReturn(networks).when(dockerClientWrapperMock).listLabeledNetworks(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(0));
+        verify(dockerClientWrapperMock).deleteNetwork("a-dead0001-1");
+        verify(dockerClientWrapperMock, never()).deleteNetwork("a-live0001-1");
+        verify(dockerClientWrapperMock, never()).deleteNetwork("a-own-1");
+    }
+
+    @Test
+    public void shouldContinueIfContainerCannotBeRemoved() {
+        processes.put("111", false);
+        doReturn(Arrays.asList(
+                container("a-dead0001-1-db", false, labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1")),
+                container("a-dead0001-1-app", false, labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+        doThrow(new DockerClientWrapperException("Failed to remove container")).when(dockerClientWrapperMock).removeContainer("a-dead0001-1-db");
+
+        assertThat(reaper.reap(), is(1));
+        verify(dockerClientWrapperMock).removeContainer("a-dead0001-1-app");
+        verify(dockerClientWrapperMock).deleteNetwork("a-dead0001-1");
+    }
+
+    @Test
+    public void shouldKeepSharedContainersInUseByOtherProcess() {
+        processes.put("111", false);
+        processes.put("222", true);
+        sharedRegistry.update("shared-key", entry -> {
+            entry.setNetworkName("a-dead0001-1");
+            entry.attach("live0001-1", "222", null);
+            return null;
+        });
+        doReturn(Arrays.asList(
+                container("a-dead0001-1-db", true, sharedLabels("shared-key", temporaryFolder.getRoot().toString())),
+                container("b-dead0001-2-db", false, labels("dead0001", "111", Session.HOST, NOW, "b-dead0001-2"))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+        doReturn(Arrays.asList("a-dead0001-1", "b-dead0001-2")).when(dockerClientWrapperMock).listNetworks("-dead0001-");
+
+        assertThat(reaper.reap(), is(1));
+        verify(dockerClientWrapperMock, never()).removeContainer("a-dead0001-1-db");
+        verify(dockerClientWrapperMock, never()).deleteNetwork("a-dead0001-1");
+        verify(dockerClientWrapperMock).removeContainer("b-dead0001-2-db");
+        verify(dockerClientWrapperMock).deleteNetwork("b-dead0001-2");
+    }
+
+    @Test
+    public void shouldRemoveSharedContainersNoLiveProcessIsAttachedTo() {
+        processes.put("111", false);
+        sharedRegistry.update("shared-key", entry -> {
+            entry.setNetworkName("a-dead0001-1");
+            entry.attach("dead0001-1", "111", null);
+            return null;
+        });
+        doReturn(Arrays.asList(container("a-dead0001-1-db", true, sharedLabels("shared-key", temporaryFolder.getRoot().toString()))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(1));
+        verify(dockerClientWrapperMock).removeContainer("a-dead0001-1-db");
+    }
+
+    @Test
+    public void shouldKeepSharedContainersWhoseEntryCannotBeFound() {
+        processes.put("111", false);
+        doReturn(Arrays.asList(
+                container("a-dead0001-1-db", true, sharedLabels("unknown-key", temporaryFolder.getRoot().toString())),
+                container("a-dead0001-1-app", true, sharedLabels("shared-key", null))))
+                .when(dockerClientWrapperMock).listContainers(Session.SESSION_LABEL);
+
+        assertThat(reaper.reap(), is(0));
+        verify(dockerClientWrapperMock, never()).removeContainer(anyString());
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    private static Map<String, String> sharedLabels(String key, String registryDirectory) {
+        Map<String, String> labels = labels("dead0001", "111", Session.HOST, NOW, "a-dead0001-1");
+        labels.put(Environment.SHARED_LABEL, key);
+        if (registryDirectory != null) {
+            labels.put(Environment.SHARED_REGISTRY_LABEL, registryDirectory);
+        }
+        return labels;
+    }
+
+    private static ContainerState container(String name, boolean running, Map<String, String> labels) {
+        return new ContainerState(name, running, Collections.emptyMap(), labels);
+    }
+
+    private static Map<String, String> labels(String session, String pid, String host, Instant created, String network) {
+        Map<String, String> labels = new HashMap<>();
+        labels.put(Session.SESSION_LABEL, session);
+        labels.put(Session.PID_LABEL, pid);
+        labels.put(Session.HOST_LABEL, host);
+        labels.put(Session.CREATED_LABEL, String.valueOf(created.toEpochMilli()));
+        labels.put(Environment.ENVIRONMENT_LABEL, network);
+        return labels;
+    }
+}
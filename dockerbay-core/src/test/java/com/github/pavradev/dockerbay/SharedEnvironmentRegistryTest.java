@@ -0,0 +1,121 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedEnvironmentRegistryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Map<String, Boolean> processes;
+    private Map<String, String> startTimes;
+    private SharedEnvironmentRegistry registry;
+
+    @Before
+    public void beforeMethod() {
+        processes = new HashMap<>();
+        startTimes = new HashMap<>();
+        registry = new SharedEnvironmentRegistry(temporaryFolder.getRoot().toPath(), processes::get, startTimes::get);
+    }
+
+    @Test
+    public void shouldStoreEntryBetweenUpdates() {
+        registry.update("key", entry -> {
+            entry.setNetworkName("network");
+            entry.setAllocatedPort("db", 32768);
+            entry.attach("a", "111", null);
+            return null;
+        });
+
+        registry.update("key", entry -> {
+            assertThat(entry.getNetworkName(), is("network"));
+            assertThat(entry.getAllocatedPorts().get("db"), is(32768));
+            assertThat(entry.hasAttachments(), is(true));
+            return null;
+        });
+    }
+
+    @Test
+    public void shouldDeleteEntryWithoutAttachmentsAfterClear() {
+        registry.update("key", entry -> {
+            entry.setNetworkName("network");
+            entry.attach("a", "111", null);
+            return null;
+        });
+
+        registry.update("key", entry -> {
+            entry.detach("a");
+            entry.clear();
+            return null;
+        });
+
+        assertThat(Files.exists(temporaryFolder.getRoot().toPath().resolve("key.properties")), is(false));
+        registry.update("key", entry -> {
+            assertThat(entry.getNetworkName(), nullValue());
+            return null;
+        });
+    }
+
+    @Test
+    public void shouldDropAttachmentsOfDeadProcesses() {
+        processes.put("111", false);
+        processes.put("222", true);
+        registry.update("key", entry -> {
+            entry.setNetworkName("network");
+            entry.attach("dead", "111", null);
+            entry.attach("live", "222", null);
+            entry.attach("unknown", "333", null);
+            return null;
+        });
+
+        assertThat(registry.isInUse("key"), is(true));
+        registry.update("key", entry -> {
+            entry.detach("live");
+            return null;
+        });
+        assertThat(registry.isInUse("key"), is(true));
+        registry.update("key", entry -> {
+            entry.detach("unknown");
+            return null;
+        });
+        assertThat(registry.isInUse("key"), is(false));
+    }
+
+    @Test
+    public void shouldDropAttachmentOfProcessWhosePidWasReused() {
+        processes.put("111", true);
+        processes.put("222", true);
+        startTimes.put("111", "5000");
+        startTimes.put("222", "6000");
+        registry.update("key", entry -> {
+            entry.setNetworkName("network");
+            entry.attach("reused", "111", "4000");
+            entry.attach("same", "222", "6000");
+            return null;
+        });
+
+        assertThat(registry.isInUse("key"), is(true));
+        registry.update("key", entry -> {
+            entry.detach("same");
+            return null;
+        });
+        assertThat(registry.isInUse("key"), is(false));
+    }
+
+    @Test
+    public void shouldNotCreateEntryWhenCheckingUnknownKey() {
+        assertThat(registry.isInUse("key"), nullValue());
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+public class SnapshotCacheTest {
+
+    private static final Instant NOW = Instant.parse("2017-06-01T12:00:00Z");
+
+    private DockerClientWrapper dockerClientWrapperMock;
+    private Clock clockMock;
+    private SnapshotCache snapshotCache;
+    private ContainerConfig config;
+
+    @Before
+    public void beforeMethod() {
+        dockerClientWrapperMock = mock(DockerClientWrapper.class);
+        clockMock = mock(Clock.class);
+        doReturn(NOW).when(clockMock).instant();
+        doReturn(Collections.emptyMap()).when(dockerClientWrapperMock).listImages(SnapshotCache.REPOSITORY);
+        snapshotCache = new SnapshotCache(dockerClientWrapperMock, SnapshotCache.DEFAULT_MAX_AGE, clockMock);
+        config = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .snapshot(true)
+                .build();
+        doReturn("sha256:1").when(dockerClientWrapperMock).getImageId("image");
+    }
+
+    @Test
+    public void shouldNotFindMissingSnapshot() {
+        assertThat(snapshotCache.find(config), nullValue());
+    }
+
+    @Test
+    public void shouldFindTakenSnapshot() {
+        String snapshot = takeSnapshot();
+        doReturn("sha256:2").when(dockerClientWrapperMock).getImageId(snapshot);
+
+        assertThat(snapshotCache.find(config), is(snapshot));
+    }
+
+    @Test
+    public void shouldNotFindSnapshotOfOldBaseImage() {
+        String snapshot = takeSnapshot();
+        doReturn("sha256:2").when(dockerClientWrapperMock).getImageId(snapshot);
+        doReturn("sha256:3").when(dockerClientWrapperMock).getImageId("image");
+
+        assertThat(snapshotCache.find(config), nullValue());
+    }
+
+    @Test
+    public void shouldUseDifferentSnapshotsForDifferentEnvVariables() {
+        String snapshot = takeSnapshot();
+        config = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .addToEnv("KEY", "value")
+                .snapshot(true)
+                .build();
+
+        assertThat(takeSnapshot(), not(snapshot));
+    }
+
+    @Test
+    public void shouldRemoveStaleSnapshots() {
+        String oldSnapshot = takeSnapshot();
+        doReturn("sha256:3").when(dockerClientWrapperMock).getImageId("image");
+        String otherContainerSnapshot = SnapshotCache.REPOSITORY + ":0000000000000000-1";
+        Map<String, Instant> images = new HashMap<>();
+        images.put(oldSnapshot, NOW);
+        images.put(otherContainerSnapshot, NOW);
+        doReturn(images).when(dockerClientWrapperMock).listImages(SnapshotCache.REPOSITORY);
+        //the old snapshot is not in use by this cache anymore
+        snapshotCache = new SnapshotCache(dockerClientWrapperMock, SnapshotCache.DEFAULT_MAX_AGE, clockMock);
+
+        String newSnapshot = takeSnapshot();
+
+        assertThat(newSnapshot, not(oldSnapshot));
+        verify(dockerClientWrapperMock).removeImage(oldSnapshot);
+        verify(dockerClientWrapperMock, never()).removeImage(otherContainerSnapshot);
+    }
+
+    @Test
+    public void shouldRemoveSnapshotOfChangedConfigOnceExpired() {
+        String oldSnapshot = takeSnapshot();
+        config = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .addToEnv("KEY", "value")
+                .snapshot(true)
+                .build();
+        doReturn(Collections.singletonMap(oldSnapshot, NOW)).when(dockerClientWrapperMock).listImages(SnapshotCache.REPOSITORY);
+        doReturn(NOW.plus(SnapshotCache.DEFAULT_MAX_AGE).plusSeconds(1)).when(clockMock).instant();
+        snapshotCache = new SnapshotCache(dockerClientWrapperMock, SnapshotCache.DEFAULT_MAX_AGE, clockMock);
+
+        takeSnapshot();
+
+        verify(dockerClientWrapperMock).removeImage(oldSnapshot);
+    }
+
+    @Test
+    public void shouldKeepSnapshotInUseByThisCache() {
+        String oldSnapshot = takeSnapshot();
+        config = ContainerConfig.builder()
+                .withName("db")
+                .withImage("image")
+                .addToEnv("KEY", "value")
+                .snapshot(true)
+                .build();
+        doReturn(Collections.singletonMap(oldSnapshot, NOW)).when(dockerClientWrapperMock).listImages(SnapshotCache.REPOSITORY);
+        doReturn(NOW.plus(SnapshotCache.DEFAULT_MAX_AGE).plusSeconds(1)).when(clockMock).instant();
+
+        takeSnapshot();
+
+        verify(dockerClientWrapperMock, never()).removeImage(oldSnapshot);
+    }
+
+    @Test
+    public void shouldIgnoreCommitFailure() {
+        doThrow(new DockerClientWrapperException("failed")).when(dockerClientWrapperMock)
+                .commitContainer(anyString(), anyString(), anyString());
+
+        snapshotCache.take("env-db", config);
+    }
+
+    private String takeSnapshot() {
+        snapshotCache.take("env-db", config);
+        ArgumentCaptor<String> tag = ArgumentCaptor.forClass(String.class);
+        verify(dockerClientWrapperMock, atLeastOnce()).commitContainer(eq("env-db"), eq(SnapshotCache.REPOSITORY), tag.capture());
+        return SnapshotCache.REPOSITORY + ":" + tag.getValue();
+    }
+}
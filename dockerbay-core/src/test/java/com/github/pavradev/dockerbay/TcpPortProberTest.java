@@ -0,0 +1,191 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TcpPortProberTest {
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofMillis(500);
+    private static final PollStrategy POLL_STRATEGY = PollStrategy.fixed(Duration.ofMillis(20));
+
+    private TcpPortProber prober;
+    private List<ServerSocket> servers = new ArrayList<>();
+
+    @Before
+    public void beforeMethod() {
+        prober = new TcpPortProber("test-port-prober");
+    }
+
+    @After
+    public void afterMethod() throws IOException {
+        prober.close();
+        for (ServerSocket server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void shouldCompleteWhenPortAcceptsConnections() throws Exception {
+        ServerSocket server = listen(0);
+
+        prober.awaitOpen(address(server.getLocalPort()), null, PROBE_TIMEOUT, POLL_STRATEGY).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldRetryUntilPortIsOpen() throws Exception {
+        int port = freePort();
+        CompletableFuture<Void> portOpen = prober.awaitOpen(address(port), null, PROBE_TIMEOUT, POLL_STRATEGY);
+        Thread.sleep(200);
+        assertThat(portOpen.isDone(), is(false));
+
+        listen(port);
+
+        portOpen.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldWatchManyPortsAtOnce() throws Exception {
+        List<CompletableFuture<Void>> watches = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            watches.add(prober.awaitOpen(address(listen(0).getLocalPort()), null, PROBE_TIMEOUT, POLL_STRATEGY));
+        }
+
+        CompletableFuture.allOf(watches.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldCompleteWhenHandshakeMatches() throws Exception {
+        ServerSocket server = listen(0);
+        serve(server, "PING\r\n", "+PONG\r\n");
+
+        prober.awaitOpen(address(server.getLocalPort()), TcpHandshake.of("PING\r\n", r -> r.startsWith("+PONG")), PROBE_TIMEOUT, POLL_STRATEGY)
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldCompleteWhenGreetingMatches() throws Exception {
+        ServerSocket server = listen(0);
+        serve(server, "", "220 ready\r\n");
+
+        prober.awaitOpen(address(server.getLocalPort()), TcpHandshake.greeting(r -> r.startsWith("220")), PROBE_TIMEOUT, POLL_STRATEGY)
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldNotCompleteWhileHandshakeDoesNotMatch() throws Exception {
+        ServerSocket server = listen(0);
+        serve(server, "PING\r\n", "-LOADING\r\n");
+
+        CompletableFuture<Void> portOpen = prober.awaitOpen(address(server.getLocalPort()),
+                TcpHandshake.of("PING\r\n", r -> r.startsWith("+PONG")), PROBE_TIMEOUT, POLL_STRATEGY);
+
+        assertTimesOut(portOpen);
+    }
+
+    @Test
+    public void shouldStopWatchingWhenCancelled() throws Exception {
+        ServerSocket server = listen(0);
+        server.setSoTimeout(5000);
+        //the greeting never matches, so the prober keeps the connection open until it is cancelled
+        CompletableFuture<Void> portOpen = prober.awaitOpen(address(server.getLocalPort()), TcpHandshake.greeting(response -> false),
+                Duration.ofSeconds(30), POLL_STRATEGY);
+        try (Socket connection = server.accept()) {
+            connection.setSoTimeout(5000);
+
+            portOpen.cancel(false);
+
+            assertThat(connection.getInputStream().read(), is(-1));
+        }
+        server.setSoTimeout(300);
+        try {
+            server.accept().close();
+            throw new AssertionError("Prober connected again after being cancelled");
+        } catch (SocketTimeoutException e) {
+            //no more attempts
+        }
+    }
+
+    @Test
+    public void shouldFailPendingWatchesWhenClosed() throws Exception {
+        CompletableFuture<Void> portOpen = prober.awaitOpen(address(freePort()), null, PROBE_TIMEOUT, POLL_STRATEGY);
+
+        prober.close();
+
+        try {
+            portOpen.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return;
+        }
+        throw new AssertionError("Expected the watch to fail");
+    }
+
+    private ServerSocket listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress("localhost", port));
+        servers.add(server);
+        return server;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress("localhost", port);
+    }
+
+    /**
+     * Answers every connection with the response once the expected request is received
+     */
+    private static void serve(ServerSocket server, String expectedRequest, String response) {
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    InputStream in = socket.getInputStream();
+                    for (int i = 0; i < expectedRequest.length(); i++) {
+                        in.read();
+                    }
+                    OutputStream out = socket.getOutputStream();
+                    out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                } catch (IOException e) {
+                    //server closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void assertTimesOut(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get(500, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return;
+        }
+        throw new AssertionError("Expected the watch to be still waiting");
+    }
+}
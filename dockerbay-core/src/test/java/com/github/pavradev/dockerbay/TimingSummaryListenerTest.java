@@ -0,0 +1,48 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class TimingSummaryListenerTest {
+
+    private TimingSummaryListener listener = new TimingSummaryListener(false);
+
+    @Test
+    public void shouldAggregatePerPhaseAndSubject() {
+        listener.onEvent(event(EnvironmentEvent.Phase.IMAGE_PULL, "postgres", 200, null));
+        listener.onEvent(event(EnvironmentEvent.Phase.IMAGE_PULL, "postgres", 2000, new RuntimeException("failed")));
+
+        assertThat(listener.getSummary(),
+                containsString("IMAGE_PULL postgres: count=2 failed=1 total=2200 mean=1100 max=2000 histogram=[<=500:1 <=5000:1]"));
+    }
+
+    @Test
+    public void shouldListSlowestFirst() {
+        listener.onEvent(event(EnvironmentEvent.Phase.CONTAINER_START, "fast", 10, null));
+        listener.onEvent(event(EnvironmentEvent.Phase.READINESS_WAIT, "slow", 40000, null));
+
+        String summary = listener.getSummary();
+        assertTrue(summary.indexOf("READINESS_WAIT slow") < summary.indexOf("CONTAINER_START fast"));
+        assertThat(summary, containsString("histogram=[>30000:1]"));
+    }
+
+    @Test
+    public void shouldAggregateEnvironmentPhasesOfAllEnvironments() {
+        listener.onEvent(new EnvironmentEvent("a-1234abcd-1", EnvironmentEvent.Phase.NETWORK_CREATE, "a-1234abcd-1", Duration.ofMillis(20), null));
+        listener.onEvent(new EnvironmentEvent("b-1234abcd-2", EnvironmentEvent.Phase.NETWORK_CREATE, "b-1234abcd-2", Duration.ofMillis(40), null));
+
+        String summary = listener.getSummary();
+        assertThat(summary, containsString("NETWORK_CREATE: count=2 failed=0 total=60"));
+        assertThat(summary, not(containsString("a-1234abcd-1")));
+    }
+
+    private EnvironmentEvent event(EnvironmentEvent.Phase phase, String subject, long millis, Throwable error) {
+        return new EnvironmentEvent("env", phase, subject, Duration.ofMillis(millis), error);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.core.command.LogContainerResultCallback;
+import com.github.dockerjava.core.command.PullImageResultCallback;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+/**
+ * Asynchronous docker client based on the callbacks of Java DockerClient https://github.com/docker-java/docker-java
+ * Pulls, logs and events are streamed by DockerClient threads and complete the futures without holding a thread meanwhile.
+ * DockerClient has no asynchronous variant of the other commands, they run on the executor.
+ */
+public class AsyncDockerClientImpl extends ExecutorAsyncDockerClientWrapper {
+
+    private final DockerClientImpl dockerClient;
+
+    public AsyncDockerClientImpl(DockerClientImpl dockerClient, Executor executor) {
+        super(dockerClient, executor);
+        this.dockerClient = dockerClient;
+    }
+
+    @Override
+    public CompletableFuture<Void> pullImage(String imageName) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            dockerClient.getDockerClient().pullImageCmd(imageName).exec(new PullImageResultCallback() {
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    try {
+                        //completed already, only tells whether the last status is a success
+                        awaitSuccess();
+                        future.complete(null);
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(new DockerClientWrapperException("Failed to pull image " + imageName, e));
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    future.completeExceptionally(new DockerClientWrapperException("Failed to pull image " + imageName, throwable));
+                    super.onError(throwable);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(new DockerClientWrapperException("Failed to pull image " + imageName, e));
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<String> getContainerLogs(String containerName) {
+        StringBuilder logs = new StringBuilder();
+        LogDecoder decoder = new LogDecoder();
+        return streamContainerLogs(containerName, payload -> decoder.decode(payload, logs))
+                .thenApply(done -> {
+                    decoder.finish(logs);
+                    return logs.toString();
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> streamContainerLogs(String containerName, LogListener listener) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            dockerClient.getDockerClient().logContainerCmd(containerName)
+                    .withStdOut(true)
+                    .withStdErr(true)
+                    .exec(new LogContainerResultCallback() {
+                        @Override
+                        public void onNext(Frame frame) {
+                            listener.onLogFrame(frame.getPayload());
+                        }
+
+                        @Override
+                        public void onComplete() {
+                            super.onComplete();
+                            listener.onComplete();
+                            future.complete(null);
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                            future.completeExceptionally(new DockerClientWrapperException("Failed to read container logs from " + containerName, throwable));
+                            super.onError(throwable);
+                        }
+                    });
+        } catch (Exception e) {
+            future.completeExceptionally(new DockerClientWrapperException("Failed to read container logs from " + containerName, e));
+        }
+        return future;
+    }
+
+    /**
+     * Returns as soon as docker accepted the subscription, the logs are streamed by DockerClient threads
+     */
+    @Override
+    public CompletableFuture<Closeable> followContainerLogs(String containerName, LogListener listener) {
+        return completedWith(() -> dockerClient.followContainerLogs(containerName, listener));
+    }
+
+    /**
+     * Returns as soon as docker accepted the subscription, the events are streamed by DockerClient threads
+     */
+    @Override
+    public CompletableFuture<Closeable> subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener) {
+        return completedWith(() -> dockerClient.subscribeToContainerExits(containerNames, listener));
+    }
+
+    private static <T> CompletableFuture<T> completedWith(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(call.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
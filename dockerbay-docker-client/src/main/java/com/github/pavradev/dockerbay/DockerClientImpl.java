@@ -1,6 +1,10 @@
 package com.github.pavradev.dockerbay;
 
+import java.io.Closeable;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,14 +13,24 @@ import java.util.stream.Collectors;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.Binds;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import com.github.dockerjava.api.model.ContainerPort;
+import com.github.dockerjava.api.model.Event;
 import com.github.dockerjava.api.model.ExposedPort;
 import com.github.dockerjava.api.model.Frame;
 import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.api.model.Link;
 import com.github.dockerjava.api.model.Links;
+import com.github.dockerjava.api.model.Network;
 import com.github.dockerjava.api.model.PortBinding;
 import com.github.dockerjava.api.model.Ports;
 import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.core.command.EventsResultCallback;
 import com.github.dockerjava.core.command.LogContainerResultCallback;
 import com.github.dockerjava.core.command.PullImageResultCallback;
 
@@ -27,6 +41,9 @@ import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
  */
 public class DockerClientImpl implements DockerClientWrapper {
 
+    //docker default CFS period, the quota is a share of it
+    private static final int CPU_PERIOD_MICROS = 100_000;
+
     private DockerClient dockerClient = DockerClientBuilder.getInstance().build();
 
     /**
@@ -36,10 +53,15 @@ public class DockerClientImpl implements DockerClientWrapper {
         this.dockerClient = dockerClient;
     }
 
+    DockerClient getDockerClient() {
+        return dockerClient;
+    }
+
     @Override
     public void createContainer(CreateContainerRequest createContainerRequest) {
         try {
-            HostConfig hostConfig = new HostConfig()
+            HostConfig hostConfig = new TmpfsHostConfig()
+                    .withTmpfs(createContainerRequest.getTmpfs())
                     .withNetworkMode(createContainerRequest.getNetworkName());
 
             if (!createContainerRequest.getLinks().isEmpty()) {
@@ -55,6 +77,19 @@ public class DockerClientImpl implements DockerClientWrapper {
                         ExposedPort.tcp(createContainerRequest.getExposedPort()));
                 hostConfig.withPortBindings(new Ports(portBinding));
             }
+            if (!createContainerRequest.getBinds().isEmpty()) {
+                List<Bind> binds = createContainerRequest.getBinds().stream()
+                        .map(Bind::parse)
+                        .collect(Collectors.toList());
+                hostConfig.withBinds(new Binds(binds.toArray(new Bind[0])));
+            }
+            if (createContainerRequest.getCpuLimit() != null) {
+                hostConfig.withCpuPeriod(CPU_PERIOD_MICROS)
+                        .withCpuQuota((int) Math.round(createContainerRequest.getCpuLimit() * CPU_PERIOD_MICROS));
+            }
+            if (createContainerRequest.getMemoryLimitMb() != null) {
+                hostConfig.withMemory(createContainerRequest.getMemoryLimitMb() * 1024L * 1024L);
+            }
 
             List<String> env = new ArrayList<>();
             createContainerRequest.getEnvVariables().entrySet().forEach(e -> {
@@ -73,6 +108,12 @@ public class DockerClientImpl implements DockerClientWrapper {
             if (createContainerRequest.getExposedPort() != null) {
                 createContainerCmd.withExposedPorts(ExposedPort.tcp(createContainerRequest.getExposedPort()));
             }
+            if (createContainerRequest.getNetworkName() != null && createContainerRequest.getAlias() != null) {
+                createContainerCmd.withAliases(createContainerRequest.getAlias());
+            }
+            Map<String, String> labels = Session.labels();
+            labels.putAll(createContainerRequest.getLabels());
+            createContainerCmd.withLabels(labels);
 
             createContainerCmd.exec();
 
@@ -108,6 +149,31 @@ public class DockerClientImpl implements DockerClientWrapper {
         }
     }
 
+    @Override
+    public List<String> forceRemoveContainers(String labelName, String labelValue) {
+        List<ContainerState> containers = listContainers(labelName, labelValue);
+        List<String> removed = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (ContainerState container : containers) {
+            try {
+                //force kills a running container, no stop call and no stop timeout
+                dockerClient.removeContainerCmd(container.getName())
+                        .withForce(true)
+                        .withRemoveVolumes(true)
+                        .exec();
+                removed.add(container.getName());
+            } catch (NotFoundException e) {
+                //removed in the meantime
+            } catch (Exception e) {
+                failed.add(container.getName() + " (" + e.getMessage() + ")");
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new DockerClientWrapperException(String.format("Failed to remove containers with label %s=%s: %s", labelName, labelValue, failed));
+        }
+        return removed;
+    }
+
     @Override
     public Map<Integer, Integer> getPortMappings(String containerName) {
         try {
@@ -127,42 +193,155 @@ public class DockerClientImpl implements DockerClientWrapper {
         }
     }
 
+    @Override
+    public List<ContainerState> listContainers(String labelName, String labelValue) {
+        try {
+            Map<String, String> labelFilter = new HashMap<>();
+            labelFilter.put(labelName, labelValue);
+            return dockerClient.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(labelFilter)
+                    .exec().stream()
+                    .map(this::toContainerState)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new DockerClientWrapperException(String.format("Failed to list containers with label %s=%s", labelName, labelValue), e);
+        }
+    }
+
+    @Override
+    public List<ContainerState> listContainers(String labelName) {
+        try {
+            return dockerClient.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(labelName)
+                    .exec().stream()
+                    .map(this::toContainerState)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to list containers with label " + labelName, e);
+        }
+    }
+
+    private ContainerState toContainerState(Container container) {
+        Map<Integer, Integer> portMappings = new HashMap<>();
+        if (container.getPorts() != null) {
+            for (ContainerPort port : container.getPorts()) {
+                if (port.getPrivatePort() != null && port.getPublicPort() != null) {
+                    portMappings.put(port.getPrivatePort(), port.getPublicPort());
+                }
+            }
+        }
+        //names are listed with a leading slash
+        String name = container.getNames()[0].substring(1);
+        boolean running = container.getStatus() != null && container.getStatus().startsWith("Up");
+        Map<String, String> labels = container.getLabels() != null ? container.getLabels() : new HashMap<>();
+        return new ContainerState(name, running, portMappings, labels);
+    }
+
     @Override
     public String getContainerLogs(String containerName) {
+        StringBuilder logs = new StringBuilder();
+        LogDecoder decoder = new LogDecoder();
+        streamContainerLogs(containerName, payload -> decoder.decode(payload, logs));
+        decoder.finish(logs);
+        return logs.toString();
+    }
+
+    @Override
+    public void streamContainerLogs(String containerName, LogListener listener) {
         try {
-            LogContainerResultCallback loggingCallback = new LogContainerResultCallback() {
-                private final StringBuffer log = new StringBuffer();
+            LogContainerResultCallback streamingCallback = new LogContainerResultCallback() {
+                @Override
+                public void onNext(Frame frame) {
+                    listener.onLogFrame(frame.getPayload());
+                }
+            };
 
+            dockerClient.logContainerCmd(containerName)
+                    .withStdOut(true)
+                    .withStdErr(true)
+                    .exec(streamingCallback);
+            streamingCallback.awaitCompletion();
+            streamingCallback.close();
+            listener.onComplete();
+
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to read container logs from " + containerName, e);
+        }
+    }
+
+    @Override
+    public Closeable followContainerLogs(String containerName, LogListener listener) {
+        try {
+            LogContainerResultCallback followingCallback = new LogContainerResultCallback() {
                 @Override
                 public void onNext(Frame frame) {
-                    log.append(new String(frame.getPayload()));
+                    listener.onLogFrame(frame.getPayload());
+                }
+
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    listener.onComplete();
                 }
 
                 @Override
-                public String toString() {
-                    return log.toString();
+                public void onError(Throwable throwable) {
+                    listener.onError(throwable);
+                    super.onError(throwable);
                 }
             };
 
-            dockerClient.logContainerCmd(containerName)
+            return dockerClient.logContainerCmd(containerName)
                     .withStdOut(true)
                     .withStdErr(true)
-                    .exec(loggingCallback);
-            loggingCallback.awaitCompletion();
-            loggingCallback.close();
-            return loggingCallback.toString();
+                    .withFollowStream(true)
+                    .exec(followingCallback);
 
         } catch (Exception e) {
-            throw new DockerClientWrapperException("Failed to read container logs from " + containerName, e);
+            throw new DockerClientWrapperException("Failed to follow container logs from " + containerName, e);
+        }
+    }
+
+    @Override
+    public Closeable subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener) {
+        try {
+            EventsResultCallback eventsCallback = new EventsResultCallback() {
+                @Override
+                public void onNext(Event event) {
+                    Map<String, String> attributes = event.getActor() != null ? event.getActor().getAttributes() : null;
+                    if (attributes == null || !containerNames.contains(attributes.get("name"))) {
+                        return;
+                    }
+                    String action = event.getAction() != null ? event.getAction() : event.getStatus();
+                    if ("oom".equals(action)) {
+                        listener.onContainerExit(attributes.get("name"), null, true);
+                    } else if ("die".equals(action)) {
+                        String exitCode = attributes.get("exitCode");
+                        listener.onContainerExit(attributes.get("name"), exitCode != null ? Integer.valueOf(exitCode) : null, false);
+                    }
+                }
+            };
+
+            return dockerClient.eventsCmd()
+                    .withContainerFilter(containerNames.toArray(new String[containerNames.size()]))
+                    .withEventFilter("die", "oom")
+                    .exec(eventsCallback);
+
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to subscribe to events of containers " + containerNames, e);
         }
     }
 
     @Override
     public void createNetwork(String networkName) {
         try {
+            //this client has no network labels, the bridge driver keeps unknown options as they are
             dockerClient.createNetworkCmd()
                     .withDriver("bridge")
                     .withName(networkName)
+                    .withOptions(Session.labels())
                     .withCheckDuplicate(true)
                     .exec();
         } catch (Exception e) {
@@ -179,6 +358,45 @@ public class DockerClientImpl implements DockerClientWrapper {
         }
     }
 
+    @Override
+    public List<String> listNetworks(String namePart) {
+        try {
+            //the daemon matches name filters as substrings, filtered again in case an older daemon does not
+            return dockerClient.listNetworksCmd()
+                    .withNameFilter(namePart)
+                    .exec().stream()
+                    .map(Network::getName)
+                    .filter(name -> name.contains(namePart))
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to list networks named like " + namePart, e);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, String>> listLabeledNetworks(String labelName) {
+        try {
+            return dockerClient.listNetworksCmd().exec().stream()
+                    .filter(network -> network.getOptions() != null && network.getOptions().containsKey(labelName))
+                    .collect(Collectors.toMap(Network::getName, Network::getOptions));
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to list networks labeled " + labelName, e);
+        }
+    }
+
+    @Override
+    public void connectToNetwork(String containerName, String networkName, String alias) {
+        try {
+            dockerClient.connectToNetworkCmd()
+                    .withContainerId(containerName)
+                    .withNetworkId(networkName)
+                    .withContainerNetwork(new ContainerNetwork().withAliases(alias))
+                    .exec();
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to connect container " + containerName + " to network " + networkName, e);
+        }
+    }
+
     @Override
     public void pullImage(String imageName) {
         try {
@@ -189,4 +407,64 @@ public class DockerClientImpl implements DockerClientWrapper {
             throw new DockerClientWrapperException("Failed to pull image " + imageName, e);
         }
     }
+
+    @Override
+    public boolean isImagePresent(String imageName) {
+        try {
+            dockerClient.inspectImageCmd(imageName).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to inspect image " + imageName, e);
+        }
+    }
+
+    @Override
+    public String getImageId(String imageName) {
+        try {
+            return dockerClient.inspectImageCmd(imageName).exec().getId();
+        } catch (NotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to inspect image " + imageName, e);
+        }
+    }
+
+    @Override
+    public void commitContainer(String containerName, String repository, String tag) {
+        try {
+            dockerClient.commitCmd(containerName).withRepository(repository).withTag(tag).exec();
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to commit container " + containerName, e);
+        }
+    }
+
+    @Override
+    public Map<String, Instant> listImages(String repository) {
+        try {
+            Map<String, Instant> images = new HashMap<>();
+            for (Image image : dockerClient.listImagesCmd().withImageNameFilter(repository).exec()) {
+                if (image.getRepoTags() == null) {
+                    continue;
+                }
+                Instant created = image.getCreated() != null ? Instant.ofEpochSecond(image.getCreated()) : null;
+                Arrays.stream(image.getRepoTags())
+                        .filter(repoTag -> repoTag.startsWith(repository + ":"))
+                        .forEach(repoTag -> images.put(repoTag, created));
+            }
+            return images;
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to list images of " + repository, e);
+        }
+    }
+
+    @Override
+    public void removeImage(String imageName) {
+        try {
+            dockerClient.removeImageCmd(imageName).exec();
+        } catch (Exception e) {
+            throw new DockerClientWrapperException("Failed to remove image " + imageName, e);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.github.pavradev.dockerbay;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.dockerjava.api.model.HostConfig;
+
+/**
+ * HostConfig with tmpfs mounts, which docker-java does not support yet.
+ * The mounts are serialized as the Tmpfs field of the create container call, available since API 1.22.
+ */
+class TmpfsHostConfig extends HostConfig {
+    @JsonProperty("Tmpfs")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, String> tmpfs;
+
+    TmpfsHostConfig withTmpfs(Map<String, String> tmpfs) {
+        this.tmpfs = tmpfs;
+        return this;
+    }
+
+    Map<String, String> getTmpfs() {
+        return tmpfs;
+    }
+}
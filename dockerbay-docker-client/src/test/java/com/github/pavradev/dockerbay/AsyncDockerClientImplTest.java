@@ -0,0 +1,111 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.LogContainerCmd;
+import com.github.dockerjava.api.command.PullImageCmd;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.PullResponseItem;
+import com.github.dockerjava.api.model.StreamType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+public class AsyncDockerClientImplTest {
+
+    private DockerClient dockerClientMock;
+    private AsyncDockerClientWrapper asyncDockerClient;
+
+    @Before
+    public void beforeMethod() {
+        dockerClientMock = mock(DockerClient.class);
+        DockerClientImpl dockerClient = new DockerClientImpl();
+        dockerClient.setDockerClient(dockerClientMock);
+        //streaming calls must not need a thread of their own
+        asyncDockerClient = new AsyncDockerClientImpl(dockerClient, runnable -> {
+            throw new AssertionError("No executor thread expected");
+        });
+    }
+
+    @Test
+    public void shouldCompletePullWhenDockerClientCallsBack() throws Exception {
+        AtomicReference<ResultCallback<PullResponseItem>> callback = mockPull("image");
+
+        CompletableFuture<Void> pull = asyncDockerClient.pullImage("image");
+
+        assertThat(pull.isDone(), is(false));
+        callback.get().onNext(pullResponse(true));
+        callback.get().onComplete();
+        pull.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldFailPullWithoutSuccessStatus() throws Exception {
+        AtomicReference<ResultCallback<PullResponseItem>> callback = mockPull("image");
+
+        CompletableFuture<Void> pull = asyncDockerClient.pullImage("image");
+        callback.get().onNext(pullResponse(false));
+        callback.get().onComplete();
+
+        try {
+            pull.get(10, TimeUnit.SECONDS);
+            fail("Should produce exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(DockerClientWrapperException.class));
+        }
+    }
+
+    @Test
+    public void shouldCollectLogsWhenDockerClientCallsBack() throws Exception {
+        LogContainerCmd logContainerCmd = mock(LogContainerCmd.class);
+        doReturn(logContainerCmd).when(dockerClientMock).logContainerCmd("container");
+        doReturn(logContainerCmd).when(logContainerCmd).withStdOut(anyBoolean());
+        doReturn(logContainerCmd).when(logContainerCmd).withStdErr(anyBoolean());
+        AtomicReference<ResultCallback<Frame>> callback = new AtomicReference<>();
+        doAnswer(invocation -> {
+            callback.set((ResultCallback<Frame>) invocation.getArguments()[0]);
+            return callback.get();
+        }).when(logContainerCmd).exec(any(ResultCallback.class));
+
+        CompletableFuture<String> logs = asyncDockerClient.getContainerLogs("container");
+
+        assertThat(logs.isDone(), is(false));
+        callback.get().onNext(new Frame(StreamType.STDOUT, "Started\n".getBytes(StandardCharsets.UTF_8)));
+        callback.get().onComplete();
+        assertThat(logs.get(10, TimeUnit.SECONDS), is("Started\n"));
+    }
+
+    private AtomicReference<ResultCallback<PullResponseItem>> mockPull(String imageName) {
+        PullImageCmd pullImageCmd = mock(PullImageCmd.class);
+        doReturn(pullImageCmd).when(dockerClientMock).pullImageCmd(imageName);
+        AtomicReference<ResultCallback<PullResponseItem>> callback = new AtomicReference<>();
+        doAnswer(invocation -> {
+            callback.set((ResultCallback<PullResponseItem>) invocation.getArguments()[0]);
+            return callback.get();
+        }).when(pullImageCmd).exec(any(ResultCallback.class));
+        return callback;
+    }
+
+    private static PullResponseItem pullResponse(boolean success) {
+        PullResponseItem item = mock(PullResponseItem.class);
+        doReturn(success).when(item).isPullSuccessIndicated();
+        return item;
+    }
+}
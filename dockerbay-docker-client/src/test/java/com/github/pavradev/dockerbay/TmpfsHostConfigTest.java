@@ -0,0 +1,31 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+public class TmpfsHostConfigTest {
+
+    @Test
+    public void shouldSerializeTmpfsNextToHostConfigFields() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(new TmpfsHostConfig()
+                .withTmpfs(Collections.singletonMap("/var/lib/postgresql/data", "size=512m"))
+                .withNetworkMode("net"));
+
+        assertThat(json, containsString("\"Tmpfs\":{\"/var/lib/postgresql/data\":\"size=512m\"}"));
+        assertThat(json, containsString("\"NetworkMode\":\"net\""));
+    }
+
+    @Test
+    public void shouldOmitEmptyTmpfs() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(new TmpfsHostConfig()
+                .withTmpfs(Collections.emptyMap()));
+
+        assertThat(json, not(containsString("Tmpfs")));
+    }
+}
@@ -2,6 +2,9 @@ package com.github.pavradev.dockerbay;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import com.github.pavradev.dockerbay.exceptions.EnvironmentException;
 
@@ -11,13 +14,27 @@ import org.junit.runners.model.MultipleFailureException;
 import org.junit.runners.model.Statement;
 
 /**
- * Junit Rule to wire docker environment
+ * Junit Rule to wire docker environment.
+ * <p>
+ * Used as a {@code @Rule} it creates a fresh environment for every test method.
+ * Used as a {@code @ClassRule} it creates one environment shared by all the tests of the class.
+ * The same rule instance can be a {@code @ClassRule} of a suite and of its classes: the environment
+ * is reference counted, so it is created by the outermost user and cleaned up when the last one is done.
+ * If the rule is also registered as a {@code @Rule}, the reset hook is called before every test that runs in a shared environment.
+ * <p>
+ * Test methods may run in parallel: each of them gets its own environment, visible to the threads it starts.
  */
 public class DockerRule implements TestRule {
 
     private EnvironmentFactory environmentFactory;
-    private Environment environment;
-    private List<ContainerConfig> containers = new ArrayList<>();
+    private final InheritableThreadLocal<Environment> environment = new InheritableThreadLocal<>();
+    private List<ContainerConfig> containers = new CopyOnWriteArrayList<>();
+    private volatile Consumer<Environment> resetHook;
+
+    //guarded by this, the shared environment is initialized outside of the lock and completes sharedEnvironmentReady
+    private Environment sharedEnvironment;
+    private CompletableFuture<Environment> sharedEnvironmentReady;
+    private int sharedEnvironmentReferences = 0;
 
     private DockerRule(EnvironmentFactory environmentFactory) {
         this.environmentFactory = environmentFactory;
@@ -29,24 +46,54 @@ public class DockerRule implements TestRule {
         }
     }
 
+    /**
+     * Called before every test that runs in a shared environment, for instance to truncate tables
+     */
+    public void setResetHook(Consumer<Environment> resetHook) {
+        this.resetHook = resetHook;
+    }
+
+    /**
+     * A shared environment is returned as soon as it is created, check its status if it may still be initializing
+     */
     public Environment getEnvironment() {
-        return this.environment;
+        synchronized (this) {
+            if (sharedEnvironment != null) {
+                return sharedEnvironment;
+            }
+        }
+        return this.environment.get();
     }
 
     @Override
     public Statement apply(Statement statement, Description description) {
-        String envId = description.getTestClass().getSimpleName();
-        if (description.getMethodName() != null) {
-            envId += ("-" + description.getMethodName());
+        if (description.getMethodName() == null) {
+            return sharedEnvironmentStatement(statement, description);
+        }
+        synchronized (this) {
+            if (sharedEnvironment != null) {
+                return resetAndEvaluateStatement(statement, sharedEnvironmentReady);
+            }
         }
-        environment = environmentFactory.getWithId(envId);
-        environment.setContainers(containers);
+        String envId = description.getTestClass().getSimpleName() + "-" + description.getMethodName();
         return new Statement() {
             @Override
             public void evaluate() throws Throwable {
                 List<Throwable> errors = new ArrayList<>();
-                environment.initialize();
-                if (Environment.Status.INITIALIZED.equals(environment.getStatus())) {
+                Environment env = environmentFactory.getWithId(envId);
+                env.setContainers(containers);
+                environment.set(env);
+                try {
+                    evaluateInEnvironment(env, errors);
+                } finally {
+                    environment.remove();
+                }
+                MultipleFailureException.assertEmpty(errors);
+            }
+
+            private void evaluateInEnvironment(Environment env, List<Throwable> errors) {
+                env.initialize();
+                if (Environment.Status.INITIALIZED.equals(env.getStatus())) {
                     try {
                         statement.evaluate();
                     } catch (Throwable e) {
@@ -55,12 +102,89 @@ public class DockerRule implements TestRule {
                 } else {
                     errors.add(new EnvironmentException("Failed to init environment"));
                 }
-                environment.cleanup();
+                env.cleanup();
+            }
+        };
+    }
+
+    private Statement sharedEnvironmentStatement(Statement statement, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                List<Throwable> errors = new ArrayList<>();
+                Environment env = acquireSharedEnvironment(description.getTestClass().getSimpleName());
+                if (Environment.Status.INITIALIZED.equals(env.getStatus())) {
+                    try {
+                        statement.evaluate();
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                } else {
+                    errors.add(new EnvironmentException("Failed to init environment"));
+                }
+                releaseSharedEnvironment();
                 MultipleFailureException.assertEmpty(errors);
             }
         };
     }
 
+    private Statement resetAndEvaluateStatement(Statement statement, CompletableFuture<Environment> ready) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                Environment env = ready.join();
+                if (resetHook != null) {
+                    resetHook.accept(env);
+                }
+                statement.evaluate();
+            }
+        };
+    }
+
+    /**
+     * The first user creates and initializes the environment, the next ones wait for it without holding the rule lock
+     */
+    private Environment acquireSharedEnvironment(String envId) {
+        Environment env;
+        CompletableFuture<Environment> ready;
+        boolean creator = false;
+        synchronized (this) {
+            if (sharedEnvironment == null) {
+                sharedEnvironment = environmentFactory.getWithId(envId);
+                sharedEnvironment.setContainers(containers);
+                sharedEnvironmentReady = new CompletableFuture<>();
+                creator = true;
+            }
+            sharedEnvironmentReferences++;
+            env = sharedEnvironment;
+            ready = sharedEnvironmentReady;
+        }
+        if (creator) {
+            try {
+                env.initialize();
+            } finally {
+                ready.complete(env);
+            }
+        }
+        return ready.join();
+    }
+
+    private void releaseSharedEnvironment() {
+        Environment released = null;
+        synchronized (this) {
+            sharedEnvironmentReferences--;
+            if (sharedEnvironmentReferences == 0) {
+                released = sharedEnvironment;
+                sharedEnvironment = null;
+                sharedEnvironmentReady = null;
+            }
+        }
+        //cleaned up outside of the lock, like it is initialized
+        if (released != null) {
+            released.cleanup();
+        }
+    }
+
     public static DockerRuleBuilder builder() {
         return new DockerRuleBuilder();
     }
@@ -68,6 +192,7 @@ public class DockerRule implements TestRule {
     public static class DockerRuleBuilder {
         private EnvironmentFactory environmentFactory;
         private List<ContainerConfig> containers = new ArrayList<>();
+        private Consumer<Environment> resetHook;
 
         private DockerRuleBuilder() {
         }
@@ -84,10 +209,16 @@ public class DockerRule implements TestRule {
             return this;
         }
 
+        public DockerRuleBuilder withResetHook(Consumer<Environment> resetHook) {
+            this.resetHook = resetHook;
+            return this;
+        }
+
         public DockerRule build() {
             DockerRule dockerRule = new DockerRule(this.environmentFactory);
             dockerRule.setContainers(this.containers);
+            dockerRule.setResetHook(this.resetHook);
             return dockerRule;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,32 @@
 package com.github.pavradev.dockerbay;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.Description;
@@ -18,6 +37,7 @@ public class DockerRuleTest {
 
     private DockerRule dockerRule;
     private Environment env;
+    private EnvironmentFactory envFactoryMock;
 
     Description description;
     Statement baseStatement;
@@ -25,7 +45,7 @@ public class DockerRuleTest {
     @Before
     public void beforeEachTest(){
         env = mock(Environment.class);
-        EnvironmentFactory envFactoryMock = mock(EnvironmentFactory.class);
+        envFactoryMock = mock(EnvironmentFactory.class);
         doReturn(env).when(envFactoryMock).getWithId(anyString());
         dockerRule = DockerRule.builder().withEnvironmentFactory(envFactoryMock).build();
 
@@ -71,4 +91,177 @@ public class DockerRuleTest {
         verify(baseStatement, never()).evaluate();
         verify(env).cleanup();
     }
+
+    @Test
+    public void shouldShareEnvAcrossTestsOfClass() throws Throwable {
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        Description classDescription = mock(Description.class);
+        doReturn(DockerRuleTest.class).when(classDescription).getTestClass();
+        Statement classStatement = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                dockerRule.apply(baseStatement, description).evaluate();
+                dockerRule.apply(baseStatement, description).evaluate();
+            }
+        };
+
+        dockerRule.apply(classStatement, classDescription).evaluate();
+
+        verify(envFactoryMock).getWithId("DockerRuleTest");
+        verify(env).initialize();
+        verify(baseStatement, times(2)).evaluate();
+        verify(env).cleanup();
+    }
+
+    @Test
+    public void shouldCleanupSharedEnvAfterLastReference() throws Throwable {
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        Description suiteDescription = mock(Description.class);
+        doReturn(DockerRuleTest.class).when(suiteDescription).getTestClass();
+        Statement suiteStatement = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                dockerRule.apply(baseStatement, suiteDescription).evaluate();
+                dockerRule.apply(baseStatement, suiteDescription).evaluate();
+                verify(env, never()).cleanup();
+            }
+        };
+
+        dockerRule.apply(suiteStatement, suiteDescription).evaluate();
+
+        verify(env).initialize();
+        verify(baseStatement, times(2)).evaluate();
+        verify(env).cleanup();
+    }
+
+    @Test
+    public void shouldResetSharedEnvBeforeEachTest() throws Throwable {
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        List<Environment> resetEnvironments = new ArrayList<>();
+        dockerRule = DockerRule.builder()
+                .withEnvironmentFactory(envFactoryMock)
+                .withResetHook(resetEnvironments::add)
+                .build();
+        Description classDescription = mock(Description.class);
+        doReturn(DockerRuleTest.class).when(classDescription).getTestClass();
+        Statement classStatement = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                dockerRule.apply(baseStatement, description).evaluate();
+                dockerRule.apply(baseStatement, description).evaluate();
+            }
+        };
+
+        dockerRule.apply(classStatement, classDescription).evaluate();
+
+        assertThat(resetEnvironments.size(), is(2));
+        assertThat(resetEnvironments.get(0), is(env));
+    }
+
+    @Test
+    public void shouldGiveParallelTestsTheirOwnEnvironments() throws Throwable {
+        Environment otherEnv = mock(Environment.class);
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        doReturn(Environment.Status.INITIALIZED).when(otherEnv).getStatus();
+        doReturn(env).doReturn(otherEnv).when(envFactoryMock).getWithId(anyString());
+        CyclicBarrier bothRunning = new CyclicBarrier(2);
+        Map<String, Environment> seenEnvironments = new ConcurrentHashMap<>();
+        Statement statement = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                bothRunning.await(10, TimeUnit.SECONDS);
+                seenEnvironments.put(Thread.currentThread().getName(), dockerRule.getEnvironment());
+                bothRunning.await(10, TimeUnit.SECONDS);
+            }
+        };
+        Statement first = dockerRule.apply(statement, description);
+        Statement second = dockerRule.apply(statement, description);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Statement s : Arrays.asList(first, second)) {
+            futures.add(executor.submit(() -> {
+                try {
+                    s.evaluate();
+                } catch (Throwable e) {
+                    throw new ExecutionException(e);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(new HashSet<>(seenEnvironments.values()).size(), is(2));
+        verify(env).cleanup();
+        verify(otherEnv).cleanup();
+    }
+
+    @Test
+    public void shouldNotBlockRuleWhileSharedEnvCleansUp() throws Throwable {
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        CountDownLatch cleaning = new CountDownLatch(1);
+        CountDownLatch cleanupAllowed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            cleaning.countDown();
+            cleanupAllowed.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(env).cleanup();
+        Description classDescription = mock(Description.class);
+        doReturn(DockerRuleTest.class).when(classDescription).getTestClass();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> classRun = executor.submit(() -> {
+            try {
+                dockerRule.apply(baseStatement, classDescription).evaluate();
+            } catch (Throwable e) {
+                throw new ExecutionException(e);
+            }
+            return null;
+        });
+        assertTrue(cleaning.await(10, TimeUnit.SECONDS));
+
+        //the released environment is no longer handed out, and asking does not wait for the teardown
+        assertThat(CompletableFuture.supplyAsync(dockerRule::getEnvironment).get(2, TimeUnit.SECONDS) == null, is(true));
+
+        cleanupAllowed.countDown();
+        classRun.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        verify(env).cleanup();
+    }
+
+    @Test
+    public void shouldNotBlockRuleWhileSharedEnvInitializes() throws Throwable {
+        doReturn(Environment.Status.INITIALIZED).when(env).getStatus();
+        CountDownLatch initializing = new CountDownLatch(1);
+        CountDownLatch initializationAllowed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            initializing.countDown();
+            initializationAllowed.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(env).initialize();
+        Description classDescription = mock(Description.class);
+        doReturn(DockerRuleTest.class).when(classDescription).getTestClass();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> classRun = executor.submit(() -> {
+            try {
+                dockerRule.apply(baseStatement, classDescription).evaluate();
+            } catch (Throwable e) {
+                throw new ExecutionException(e);
+            }
+            return null;
+        });
+        assertTrue(initializing.await(10, TimeUnit.SECONDS));
+
+        //neither call waits for the containers
+        assertThat(dockerRule.getEnvironment(), is(env));
+        Statement testStatement = dockerRule.apply(baseStatement, description);
+
+        initializationAllowed.countDown();
+        classRun.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(testStatement == null, is(false));
+        verify(env).initialize();
+    }
 }
@@ -0,0 +1,107 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a simulated container does once started: log lines printed over time and an optional exit
+ */
+public class ContainerBehavior {
+
+    static class LogLine {
+        private final Duration after;
+        private final String line;
+
+        private LogLine(Duration after, String line) {
+            this.after = after;
+            this.line = line;
+        }
+
+        Duration getAfter() {
+            return after;
+        }
+
+        String getLine() {
+            return line;
+        }
+    }
+
+    private List<LogLine> logLines = new ArrayList<>();
+    private Duration exitAfter;
+    private Integer exitCode;
+    private boolean outOfMemory;
+
+    private ContainerBehavior() {
+    }
+
+    /**
+     * Runs until stopped and prints nothing
+     */
+    public static ContainerBehavior idle() {
+        return builder().build();
+    }
+
+    List<LogLine> getLogLines() {
+        return logLines;
+    }
+
+    /**
+     * @return time after start when the container exits by itself, null if it runs until stopped
+     */
+    Duration getExitAfter() {
+        return exitAfter;
+    }
+
+    Integer getExitCode() {
+        return exitCode;
+    }
+
+    boolean isOutOfMemory() {
+        return outOfMemory;
+    }
+
+    public static ContainerBehaviorBuilder builder() {
+        return new ContainerBehaviorBuilder();
+    }
+
+    public static class ContainerBehaviorBuilder {
+        private ContainerBehavior behavior = new ContainerBehavior();
+
+        private ContainerBehaviorBuilder() {
+        }
+
+        /**
+         * Prints the line the given time after start
+         */
+        public ContainerBehaviorBuilder logAfter(Duration after, String line) {
+            behavior.logLines.add(new LogLine(after, line));
+            return this;
+        }
+
+        public ContainerBehaviorBuilder exitAfter(Duration after, int exitCode) {
+            behavior.exitAfter = after;
+            behavior.exitCode = exitCode;
+            return this;
+        }
+
+        /**
+         * Gets killed by the OOM killer the given time after start
+         */
+        public ContainerBehaviorBuilder outOfMemoryAfter(Duration after) {
+            behavior.exitAfter = after;
+            behavior.exitCode = 137;
+            behavior.outOfMemory = true;
+            return this;
+        }
+
+        public ContainerBehavior build() {
+            behavior.logLines.sort((a, b) -> a.getAfter().compareTo(b.getAfter()));
+            behavior.logLines = Collections.unmodifiableList(behavior.logLines);
+            ContainerBehavior result = behavior;
+            behavior = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.pavradev.dockerbay;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution of the time a simulated docker call takes
+ */
+@FunctionalInterface
+public interface Latency {
+
+    Duration sample(Random random);
+
+    static Latency none() {
+        return random -> Duration.ZERO;
+    }
+
+    static Latency fixed(Duration latency) {
+        return random -> latency;
+    }
+
+    static Latency uniform(Duration min, Duration max) {
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("Max latency cannot be less than min latency");
+        }
+        long rangeNanos = max.minus(min).toNanos();
+        return random -> min.plusNanos((long) (random.nextDouble() * rangeNanos));
+    }
+
+    /**
+     * Long tailed distribution, typical for registry pulls and container starts
+     *
+     * @param sigma standard deviation of the underlying normal distribution, 0.5 gives a moderate tail
+     */
+    static Latency logNormal(Duration median, double sigma) {
+        if (sigma < 0) {
+            throw new IllegalArgumentException("Sigma cannot be negative");
+        }
+        return random -> Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * random.nextGaussian())));
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.pavradev.dockerbay;
+
+/**
+ * Docker calls with their own latency and failure rate in the simulation
+ */
+public enum Operation {
+    PULL_IMAGE, INSPECT_IMAGE, COMMIT_CONTAINER, REMOVE_IMAGE,
+    CREATE_CONTAINER, START_CONTAINER, STOP_CONTAINER, REMOVE_CONTAINER, INSPECT_CONTAINER, LIST_CONTAINERS, GET_LOGS,
+    CREATE_NETWORK, DELETE_NETWORK, LIST_NETWORKS, CONNECT_TO_NETWORK
+}
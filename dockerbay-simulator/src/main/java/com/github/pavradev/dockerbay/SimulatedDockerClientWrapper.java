@@ -0,0 +1,594 @@
+package com.github.pavradev.dockerbay;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+/**
+ * Docker daemon simulated in memory: images, networks, containers, port allocation, log output over time and exits.
+ * Every call takes a latency sampled from the configured distribution and may fail with the configured rate.
+ * Like the real daemon it refuses to remove running containers, networks with containers and images in use.
+ */
+public class SimulatedDockerClientWrapper implements DockerClientWrapper, Closeable {
+
+    public static final int DEFAULT_FIRST_PORT = 32768;
+
+    private enum Status {CREATED, RUNNING, EXITED}
+
+    private static class SimulatedContainer {
+        private final CreateContainerRequest request;
+        private final Set<String> networks = new HashSet<>();
+        private final StringBuilder logs = new StringBuilder();
+        private final List<LogListener> logListeners = new ArrayList<>();
+        private final List<ScheduledFuture<?>> scheduledEvents = new ArrayList<>();
+        private Status status = Status.CREATED;
+        private Integer hostPort;
+
+        private SimulatedContainer(CreateContainerRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static class ExitSubscription {
+        private final Set<String> containerNames;
+        private final ContainerExitListener listener;
+
+        private ExitSubscription(Collection<String> containerNames, ContainerExitListener listener) {
+            this.containerNames = new HashSet<>(containerNames);
+            this.listener = listener;
+        }
+    }
+
+    private Latency defaultLatency = Latency.none();
+    private Map<Operation, Latency> latencies = new EnumMap<>(Operation.class);
+    private Map<Operation, Double> failureRates = new EnumMap<>(Operation.class);
+    private Map<String, ContainerBehavior> behaviorPerImage = new ConcurrentHashMap<>();
+    private Set<String> missingImages = new HashSet<>();
+    private long seed = new Random().nextLong();
+    //one generator per operation and subject, see randomFor
+    private final Map<String, Random> randoms = new ConcurrentHashMap<>();
+    private int nextPort = DEFAULT_FIRST_PORT;
+
+    private final Object lock = new Object();
+    private final Map<String, String> imageIds = new HashMap<>();
+    private final Map<String, Instant> imageCreated = new HashMap<>();
+    private final Map<String, Set<String>> networks = new HashMap<>();
+    private final Map<String, SimulatedContainer> containers = new HashMap<>();
+    private final List<ExitSubscription> exitSubscriptions = new CopyOnWriteArrayList<>();
+    //a single thread keeps the log lines of a container in order
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dockerbay-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SimulatedDockerClientWrapper() {
+    }
+
+    /**
+     * @return names of the containers that exist, running or not
+     */
+    public Set<String> getContainerNames() {
+        synchronized (lock) {
+            return new HashSet<>(containers.keySet());
+        }
+    }
+
+    public Set<String> getNetworkNames() {
+        synchronized (lock) {
+            return new HashSet<>(networks.keySet());
+        }
+    }
+
+    public Set<String> getImageNames() {
+        synchronized (lock) {
+            return new HashSet<>(imageIds.keySet());
+        }
+    }
+
+    public boolean isRunning(String containerName) {
+        synchronized (lock) {
+            SimulatedContainer container = containers.get(containerName);
+            return container != null && Status.RUNNING.equals(container.status);
+        }
+    }
+
+    @Override
+    public void createContainer(CreateContainerRequest request) {
+        simulateCall(Operation.CREATE_CONTAINER, request.getName());
+        synchronized (lock) {
+            if (!imageIds.containsKey(request.getImage())) {
+                throw new DockerClientWrapperException("No such image: " + request.getImage());
+            }
+            if (containers.containsKey(request.getName())) {
+                throw new DockerClientWrapperException("Conflict. The container name " + request.getName() + " is already in use");
+            }
+            SimulatedContainer container = new SimulatedContainer(request);
+            if (request.getNetworkName() != null) {
+                getNetwork(request.getNetworkName()).add(request.getName());
+                container.networks.add(request.getNetworkName());
+            }
+            containers.put(request.getName(), container);
+        }
+    }
+
+    @Override
+    public void startContainer(String containerName) {
+        simulateCall(Operation.START_CONTAINER, containerName);
+        synchronized (lock) {
+            SimulatedContainer container = getContainer(containerName);
+            if (Status.RUNNING.equals(container.status)) {
+                return;
+            }
+            container.status = Status.RUNNING;
+            if (container.request.getExposedPort() != null && container.hostPort == null) {
+                container.hostPort = nextPort++;
+            }
+            ContainerBehavior behavior = behaviorPerImage.getOrDefault(container.request.getImage(), ContainerBehavior.idle());
+            for (ContainerBehavior.LogLine logLine : behavior.getLogLines()) {
+                container.scheduledEvents.add(scheduler.schedule(() -> appendLog(containerName, container, logLine.getLine()),
+                        logLine.getAfter().toNanos(), TimeUnit.NANOSECONDS));
+            }
+            if (behavior.getExitAfter() != null) {
+                container.scheduledEvents.add(scheduler.schedule(() -> exit(containerName, container, behavior.getExitCode(), behavior.isOutOfMemory()),
+                        behavior.getExitAfter().toNanos(), TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    /**
+     * Kills the container like docker kill does
+     */
+    @Override
+    public void stopContainer(String containerName) {
+        simulateCall(Operation.STOP_CONTAINER, containerName);
+        SimulatedContainer container;
+        synchronized (lock) {
+            container = getContainer(containerName);
+            if (!Status.RUNNING.equals(container.status)) {
+                throw new DockerClientWrapperException("Container " + containerName + " is not running");
+            }
+        }
+        exit(containerName, container, 137, false);
+    }
+
+    @Override
+    public void removeContainer(String containerName) {
+        simulateCall(Operation.REMOVE_CONTAINER, containerName);
+        synchronized (lock) {
+            SimulatedContainer container = getContainer(containerName);
+            if (Status.RUNNING.equals(container.status)) {
+                throw new DockerClientWrapperException("You cannot remove a running container " + containerName);
+            }
+            container.networks.forEach(network -> networks.get(network).remove(containerName));
+            containers.remove(containerName);
+        }
+    }
+
+    @Override
+    public List<String> forceRemoveContainers(String labelName, String labelValue) {
+        List<String> names = listContainers(labelName, labelValue).stream()
+                .map(ContainerState::getName)
+                .collect(Collectors.toList());
+        for (String containerName : names) {
+            simulateCall(Operation.REMOVE_CONTAINER, containerName);
+            SimulatedContainer container;
+            synchronized (lock) {
+                container = getContainer(containerName);
+            }
+            exit(containerName, container, 137, false);
+            synchronized (lock) {
+                container.networks.forEach(network -> networks.get(network).remove(containerName));
+                containers.remove(containerName);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public Map<Integer, Integer> getPortMappings(String containerName) {
+        simulateCall(Operation.INSPECT_CONTAINER, containerName);
+        synchronized (lock) {
+            return getPortMappings(getContainer(containerName));
+        }
+    }
+
+    private Map<Integer, Integer> getPortMappings(SimulatedContainer container) {
+        Map<Integer, Integer> portMappings = new HashMap<>();
+        if (container.hostPort != null) {
+            portMappings.put(container.request.getExposedPort(), container.hostPort);
+        }
+        return portMappings;
+    }
+
+    @Override
+    public List<ContainerState> listContainers(String labelName, String labelValue) {
+        simulateCall(Operation.LIST_CONTAINERS, labelValue);
+        synchronized (lock) {
+            return containers.values().stream()
+                    .filter(c -> labelValue.equals(c.request.getLabels().get(labelName)))
+                    .map(this::toContainerState)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<ContainerState> listContainers(String labelName) {
+        simulateCall(Operation.LIST_CONTAINERS, labelName);
+        synchronized (lock) {
+            return containers.values().stream()
+                    .filter(c -> c.request.getLabels().containsKey(labelName))
+                    .map(this::toContainerState)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private ContainerState toContainerState(SimulatedContainer container) {
+        return new ContainerState(container.request.getName(), Status.RUNNING.equals(container.status), getPortMappings(container),
+                container.request.getLabels());
+    }
+
+    @Override
+    public String getContainerLogs(String containerName) {
+        simulateCall(Operation.GET_LOGS, containerName);
+        synchronized (lock) {
+            return getContainer(containerName).logs.toString();
+        }
+    }
+
+    @Override
+    public void streamContainerLogs(String containerName, LogListener listener) {
+        simulateCall(Operation.GET_LOGS, containerName);
+        byte[] logs;
+        synchronized (lock) {
+            logs = getContainer(containerName).logs.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        if (logs.length > 0) {
+            listener.onLogFrame(logs);
+        }
+        listener.onComplete();
+    }
+
+    @Override
+    public Closeable followContainerLogs(String containerName, LogListener listener) {
+        simulateCall(Operation.GET_LOGS, containerName);
+        synchronized (lock) {
+            SimulatedContainer container = getContainer(containerName);
+            if (container.logs.length() > 0) {
+                listener.onLogFrame(container.logs.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (Status.EXITED.equals(container.status)) {
+                listener.onComplete();
+            } else {
+                container.logListeners.add(listener);
+            }
+            return () -> {
+                synchronized (lock) {
+                    container.logListeners.remove(listener);
+                }
+            };
+        }
+    }
+
+    @Override
+    public Closeable subscribeToContainerExits(Collection<String> containerNames, ContainerExitListener listener) {
+        ExitSubscription subscription = new ExitSubscription(containerNames, listener);
+        exitSubscriptions.add(subscription);
+        return () -> exitSubscriptions.remove(subscription);
+    }
+
+    @Override
+    public void createNetwork(String networkName) {
+        simulateCall(Operation.CREATE_NETWORK, networkName);
+        synchronized (lock) {
+            if (networks.containsKey(networkName)) {
+                throw new DockerClientWrapperException("Network " + networkName + " already exists");
+            }
+            networks.put(networkName, new LinkedHashSet<>());
+        }
+    }
+
+    @Override
+    public void deleteNetwork(String networkName) {
+        simulateCall(Operation.DELETE_NETWORK, networkName);
+        synchronized (lock) {
+            if (!getNetwork(networkName).isEmpty()) {
+                throw new DockerClientWrapperException("Network " + networkName + " has active endpoints " + networks.get(networkName));
+            }
+            networks.remove(networkName);
+        }
+    }
+
+    @Override
+    public List<String> listNetworks(String namePart) {
+        simulateCall(Operation.LIST_NETWORKS, namePart);
+        synchronized (lock) {
+            return networks.keySet().stream()
+                    .filter(name -> name.contains(namePart))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Simulated networks carry no labels
+     */
+    @Override
+    public Map<String, Map<String, String>> listLabeledNetworks(String labelName) {
+        simulateCall(Operation.LIST_NETWORKS, labelName);
+        return new HashMap<>();
+    }
+
+    @Override
+    public void connectToNetwork(String containerName, String networkName, String alias) {
+        simulateCall(Operation.CONNECT_TO_NETWORK, containerName);
+        synchronized (lock) {
+            SimulatedContainer container = getContainer(containerName);
+            getNetwork(networkName).add(containerName);
+            container.networks.add(networkName);
+        }
+    }
+
+    @Override
+    public void pullImage(String imageName) {
+        simulateCall(Operation.PULL_IMAGE, imageName);
+        synchronized (lock) {
+            if (missingImages.contains(imageName)) {
+                throw new DockerClientWrapperException("Failed to pull image " + imageName + ": not found");
+            }
+            if (!imageIds.containsKey(imageName)) {
+                putImage(imageName);
+            }
+        }
+    }
+
+    @Override
+    public boolean isImagePresent(String imageName) {
+        return getImageId(imageName) != null;
+    }
+
+    @Override
+    public String getImageId(String imageName) {
+        simulateCall(Operation.INSPECT_IMAGE, imageName);
+        synchronized (lock) {
+            return imageIds.get(imageName);
+        }
+    }
+
+    @Override
+    public void commitContainer(String containerName, String repository, String tag) {
+        simulateCall(Operation.COMMIT_CONTAINER, containerName);
+        synchronized (lock) {
+            SimulatedContainer container = getContainer(containerName);
+            String image = repository + ":" + tag;
+            putImage(image);
+            //a container started from the commit behaves like the original one
+            ContainerBehavior behavior = behaviorPerImage.get(container.request.getImage());
+            if (behavior != null) {
+                behaviorPerImage.put(image, behavior);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Instant> listImages(String repository) {
+        simulateCall(Operation.INSPECT_IMAGE, repository);
+        synchronized (lock) {
+            return imageCreated.entrySet().stream()
+                    .filter(image -> image.getKey().startsWith(repository + ":"))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        }
+    }
+
+    @Override
+    public void removeImage(String imageName) {
+        simulateCall(Operation.REMOVE_IMAGE, imageName);
+        synchronized (lock) {
+            if (!imageIds.containsKey(imageName)) {
+                throw new DockerClientWrapperException("No such image: " + imageName);
+            }
+            if (containers.values().stream().anyMatch(c -> imageName.equals(c.request.getImage()))) {
+                throw new DockerClientWrapperException("Image " + imageName + " is being used by a container");
+            }
+            imageIds.remove(imageName);
+            imageCreated.remove(imageName);
+        }
+    }
+
+    /**
+     * Stops the timer that drives log output and exits
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void appendLog(String containerName, SimulatedContainer container, String line) {
+        synchronized (lock) {
+            if (!Status.RUNNING.equals(container.status)) {
+                return;
+            }
+            String frame = line + "\n";
+            container.logs.append(frame);
+            byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+            //listeners are called under the lock so that they see the frames in order
+            new ArrayList<>(container.logListeners).forEach(listener -> listener.onLogFrame(bytes));
+        }
+    }
+
+    private void exit(String containerName, SimulatedContainer container, int exitCode, boolean outOfMemory) {
+        synchronized (lock) {
+            if (!Status.RUNNING.equals(container.status)) {
+                return;
+            }
+            container.status = Status.EXITED;
+            container.scheduledEvents.forEach(event -> event.cancel(false));
+            container.scheduledEvents.clear();
+            container.logListeners.forEach(LogListener::onComplete);
+            container.logListeners.clear();
+        }
+        for (ExitSubscription subscription : exitSubscriptions) {
+            if (subscription.containerNames.contains(containerName)) {
+                subscription.listener.onContainerExit(containerName, exitCode, outOfMemory);
+            }
+        }
+    }
+
+    private SimulatedContainer getContainer(String containerName) {
+        SimulatedContainer container = containers.get(containerName);
+        if (container == null) {
+            throw new DockerClientWrapperException("No such container: " + containerName);
+        }
+        return container;
+    }
+
+    private Set<String> getNetwork(String networkName) {
+        Set<String> network = networks.get(networkName);
+        if (network == null) {
+            throw new DockerClientWrapperException("No such network: " + networkName);
+        }
+        return network;
+    }
+
+    private void putImage(String imageName) {
+        imageIds.put(imageName, newImageId(imageName));
+        imageCreated.put(imageName, Instant.now());
+    }
+
+    private String newImageId(String imageName) {
+        Random random = randomFor("IMAGE_ID", imageName);
+        StringBuilder id = new StringBuilder("sha256:");
+        for (int i = 0; i < 4; i++) {
+            id.append(String.format("%016x", random.nextLong()));
+        }
+        return id.toString();
+    }
+
+    /**
+     * Waits for the sampled latency outside of the lock, then fails with the configured rate
+     */
+    private void simulateCall(Operation operation, String subject) {
+        Random random = randomFor(operation.toString(), subject);
+        Duration latency = latencies.getOrDefault(operation, defaultLatency).sample(random);
+        long deadline = System.nanoTime() + latency.toNanos();
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new DockerClientWrapperException("Interrupted during " + operation);
+            }
+        }
+        if (random.nextDouble() < failureRates.getOrDefault(operation, 0.0)) {
+            throw new DockerClientWrapperException("Simulated failure of " + operation);
+        }
+    }
+
+    /**
+     * Samples of one operation on one subject do not depend on the calls made on other subjects by other threads,
+     * so a seed reproduces a run whatever the thread scheduling. The session id is left out, it changes from run to run.
+     */
+    private Random randomFor(String purpose, String subject) {
+        String key = purpose + " " + (subject == null ? "" : subject.replace(Session.ID, ""));
+        return randoms.computeIfAbsent(key, k -> new Random(seed * 31 + k.hashCode()));
+    }
+
+    public static SimulatedDockerClientWrapperBuilder builder() {
+        return new SimulatedDockerClientWrapperBuilder();
+    }
+
+    public static class SimulatedDockerClientWrapperBuilder {
+        private SimulatedDockerClientWrapper simulator = new SimulatedDockerClientWrapper();
+
+        private SimulatedDockerClientWrapperBuilder() {
+        }
+
+        /**
+         * Latency of the operations without their own one, none by default
+         */
+        public SimulatedDockerClientWrapperBuilder withDefaultLatency(Latency latency) {
+            simulator.defaultLatency = latency;
+            return this;
+        }
+
+        public SimulatedDockerClientWrapperBuilder withLatency(Operation operation, Latency latency) {
+            simulator.latencies.put(operation, latency);
+            return this;
+        }
+
+        /**
+         * @param failureRate probability from 0 to 1 that a call fails after its latency
+         */
+        public SimulatedDockerClientWrapperBuilder withFailureRate(Operation operation, double failureRate) {
+            if (failureRate < 0 || failureRate > 1) {
+                throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+            }
+            simulator.failureRates.put(operation, failureRate);
+            return this;
+        }
+
+        /**
+         * How containers of the image behave once started, idle by default
+         */
+        public SimulatedDockerClientWrapperBuilder withBehavior(String image, ContainerBehavior behavior) {
+            simulator.behaviorPerImage.put(image, behavior);
+            return this;
+        }
+
+        /**
+         * Images that are already on the host
+         */
+        public SimulatedDockerClientWrapperBuilder withLocalImages(String... images) {
+            Arrays.stream(images).forEach(simulator::putImage);
+            return this;
+        }
+
+        /**
+         * Images the registry does not have, pulling them fails
+         */
+        public SimulatedDockerClientWrapperBuilder withMissingImages(String... images) {
+            simulator.missingImages.addAll(Arrays.asList(images));
+            return this;
+        }
+
+        /**
+         * Makes latencies, failures and image ids reproducible, also with concurrent calls:
+         * every operation on a container, network or image draws from its own generator derived from the seed
+         */
+        public SimulatedDockerClientWrapperBuilder withSeed(long seed) {
+            simulator.seed = seed;
+            return this;
+        }
+
+        public SimulatedDockerClientWrapperBuilder withFirstPort(int firstPort) {
+            simulator.nextPort = firstPort;
+            return this;
+        }
+
+        public SimulatedDockerClientWrapper build() {
+            SimulatedDockerClientWrapper result = simulator;
+            simulator = null;
+            return result;
+        }
+    }
+}
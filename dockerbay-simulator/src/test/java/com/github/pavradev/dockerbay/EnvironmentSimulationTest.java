@@ -0,0 +1,81 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Environment against the simulated daemon: real scheduling and readiness checks, no docker
+ */
+public class EnvironmentSimulationTest {
+
+    private SimulatedDockerClientWrapper simulator;
+
+    @After
+    public void afterMethod() {
+        simulator.close();
+    }
+
+    @Test
+    public void shouldStartManyContainersAndLeaveNothingBehind() {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withSeed(1)
+                .withLatency(Operation.PULL_IMAGE, Latency.logNormal(Duration.ofMillis(20), 0.5))
+                .withLatency(Operation.START_CONTAINER, Latency.uniform(Duration.ofMillis(1), Duration.ofMillis(5)))
+                .withBehavior("service", ContainerBehavior.builder()
+                        .logAfter(Duration.ofMillis(5), "booting")
+                        .logAfter(Duration.ofMillis(30), "service is ready")
+                        .build())
+                .build();
+        EnvironmentFactory environmentFactory = EnvironmentFactory.withDockerClientWrapper(simulator);
+        environmentFactory.setStartConcurrency(8);
+        environmentFactory.setStopConcurrency(8);
+        Environment environment = environmentFactory.getWithId("simulation");
+        environment.setContainers(services(40));
+
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.INITIALIZED));
+        assertThat(simulator.getContainerNames().size(), is(40));
+        environment.cleanup();
+        assertThat(simulator.getContainerNames().isEmpty(), is(true));
+        assertThat(simulator.getNetworkNames().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldFailFastWhenContainerCrashesAndCleanUp() {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withBehavior("service", ContainerBehavior.builder().exitAfter(Duration.ofMillis(20), 1).build())
+                .build();
+        Environment environment = EnvironmentFactory.withDockerClientWrapper(simulator).getWithId("simulation");
+        environment.setContainers(services(1));
+
+        long start = System.nanoTime();
+        environment.initialize();
+
+        assertThat(environment.getStatus(), is(Environment.Status.PARTIALLY_INITIALIZED));
+        assertThat(System.nanoTime() - start < Duration.ofSeconds(10).toNanos(), is(true));
+        environment.cleanup();
+        assertThat(simulator.getContainerNames().isEmpty(), is(true));
+        assertThat(simulator.getNetworkNames().isEmpty(), is(true));
+    }
+
+    private List<ContainerConfig> services(int count) {
+        List<ContainerConfig> containers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            containers.add(ContainerConfig.builder()
+                    .withName("service" + i)
+                    .withImage("service")
+                    .withExposedTcpPort(8080)
+                    .waitForLogEntry("service is ready")
+                    .build());
+        }
+        return containers;
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.pavradev.dockerbay;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.pavradev.dockerbay.exceptions.DockerClientWrapperException;
+
+public class SimulatedDockerClientWrapperTest {
+
+    private SimulatedDockerClientWrapper simulator;
+
+    @After
+    public void afterMethod() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void shouldAllocatePortsOnStart() {
+        simulator = SimulatedDockerClientWrapper.builder().withLocalImages("image").withFirstPort(40000).build();
+        createContainer("first", 8080);
+        createContainer("second", 8080);
+
+        simulator.startContainer("first");
+        simulator.startContainer("second");
+
+        assertThat(simulator.getPortMappings("first").get(8080), is(40000));
+        assertThat(simulator.getPortMappings("second").get(8080), is(40001));
+    }
+
+    @Test(expected = DockerClientWrapperException.class)
+    public void shouldNotCreateContainerFromMissingImage() {
+        simulator = SimulatedDockerClientWrapper.builder().build();
+
+        createContainer("first", null);
+    }
+
+    @Test(expected = DockerClientWrapperException.class)
+    public void shouldInjectFailures() {
+        simulator = SimulatedDockerClientWrapper.builder().withFailureRate(Operation.PULL_IMAGE, 1.0).build();
+
+        simulator.pullImage("image");
+    }
+
+    @Test
+    public void shouldDrawSameSamplesWhateverTheCallOrder() {
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            images.add("image" + i);
+        }
+        Map<String, Boolean> forward = pullAll(images);
+        List<String> reversed = new ArrayList<>(images);
+        Collections.reverse(reversed);
+
+        assertThat(pullAll(reversed), is(forward));
+    }
+
+    private Map<String, Boolean> pullAll(List<String> images) {
+        SimulatedDockerClientWrapper seeded = SimulatedDockerClientWrapper.builder()
+                .withFailureRate(Operation.PULL_IMAGE, 0.5)
+                .withSeed(42)
+                .build();
+        Map<String, Boolean> pulled = new HashMap<>();
+        try {
+            for (String image : images) {
+                try {
+                    seeded.pullImage(image);
+                    pulled.put(image, true);
+                } catch (DockerClientWrapperException e) {
+                    pulled.put(image, false);
+                }
+            }
+        } finally {
+            seeded.close();
+        }
+        return pulled;
+    }
+
+    @Test
+    public void shouldTakeConfiguredLatency() {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withLatency(Operation.PULL_IMAGE, Latency.fixed(Duration.ofMillis(100)))
+                .build();
+
+        long start = System.nanoTime();
+        simulator.pullImage("image");
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(simulator.isImagePresent("image"), is(true));
+    }
+
+    @Test
+    public void shouldPrintLogsOverTime() throws Exception {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withLocalImages("image")
+                .withBehavior("image", ContainerBehavior.builder()
+                        .logAfter(Duration.ofMillis(10), "starting")
+                        .logAfter(Duration.ofMillis(50), "ready")
+                        .build())
+                .build();
+        createContainer("first", null);
+        StringBuilder followed = new StringBuilder();
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        simulator.startContainer("first");
+        Closeable subscription = simulator.followContainerLogs("first", frame -> {
+            followed.append(new String(frame, StandardCharsets.UTF_8));
+            if (followed.toString().contains("ready")) {
+                ready.complete(null);
+            }
+        });
+
+        ready.get(10, TimeUnit.SECONDS);
+        subscription.close();
+
+        assertThat(followed.toString(), is("starting\nready\n"));
+        assertThat(simulator.getContainerLogs("first"), is("starting\nready\n"));
+    }
+
+    @Test
+    public void shouldNotifyExits() throws Exception {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withLocalImages("image")
+                .withBehavior("image", ContainerBehavior.builder().outOfMemoryAfter(Duration.ofMillis(10)).build())
+                .build();
+        createContainer("first", null);
+        CompletableFuture<String> exit = new CompletableFuture<>();
+        simulator.subscribeToContainerExits(Collections.singletonList("first"),
+                (name, exitCode, outOfMemory) -> exit.complete(name + " " + exitCode + " " + outOfMemory));
+
+        simulator.startContainer("first");
+
+        assertThat(exit.get(10, TimeUnit.SECONDS), is("first 137 true"));
+        assertThat(simulator.isRunning("first"), is(false));
+    }
+
+    @Test(expected = DockerClientWrapperException.class)
+    public void shouldNotRemoveRunningContainer() {
+        simulator = SimulatedDockerClientWrapper.builder().withLocalImages("image").build();
+        createContainer("first", null);
+        simulator.startContainer("first");
+
+        simulator.removeContainer("first");
+    }
+
+    @Test
+    public void shouldDeleteNetworkOnlyWithoutContainers() throws IOException {
+        simulator = SimulatedDockerClientWrapper.builder().withLocalImages("image").build();
+        simulator.createNetwork("net");
+        simulator.createContainer(CreateContainerRequest.builder().withName("first").fromImage("image").inNetwork("net").build());
+        try {
+            simulator.deleteNetwork("net");
+            assertTrue("Should produce exception", false);
+        } catch (DockerClientWrapperException e) {
+        }
+
+        simulator.removeContainer("first");
+        simulator.deleteNetwork("net");
+
+        assertThat(simulator.getNetworkNames().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldForceRemoveLabeledContainersOnly() {
+        simulator = SimulatedDockerClientWrapper.builder().withLocalImages("image").build();
+        simulator.createNetwork("net");
+        simulator.createContainer(CreateContainerRequest.builder().withName("first").fromImage("image").inNetwork("net").withLabel("env", "net").build());
+        simulator.createContainer(CreateContainerRequest.builder().withName("second").fromImage("image").inNetwork("net").withLabel("env", "net").build());
+        simulator.createContainer(CreateContainerRequest.builder().withName("other").fromImage("image").withLabel("env", "other").build());
+        simulator.startContainer("first");
+
+        assertThat(simulator.forceRemoveContainers("env", "net").size(), is(2));
+
+        assertThat(simulator.getContainerNames(), is(Collections.singleton("other")));
+        simulator.deleteNetwork("net");
+    }
+
+    @Test
+    public void shouldStartCommittedImageWithOriginalBehavior() throws Exception {
+        simulator = SimulatedDockerClientWrapper.builder()
+                .withLocalImages("image")
+                .withBehavior("image", ContainerBehavior.builder().exitAfter(Duration.ofMillis(10), 3).build())
+                .build();
+        createContainer("first", null);
+        simulator.commitContainer("first", "snapshot", "1");
+        simulator.createContainer(CreateContainerRequest.builder().withName("second").fromImage("snapshot:1").build());
+        CompletableFuture<Integer> exit = new CompletableFuture<>();
+        simulator.subscribeToContainerExits(Arrays.asList("second"), (name, exitCode, outOfMemory) -> exit.complete(exitCode));
+
+        simulator.startContainer("second");
+
+        assertThat(exit.get(10, TimeUnit.SECONDS), is(3));
+        assertThat(simulator.listImages("snapshot").keySet(), is(Collections.singleton("snapshot:1")));
+    }
+
+    private void createContainer(String name, Integer exposedPort) {
+        simulator.createContainer(CreateContainerRequest.builder()
+                .withName(name)
+                .fromImage("image")
+                .withExposedPort(exposedPort)
+                .build());
+    }
+}
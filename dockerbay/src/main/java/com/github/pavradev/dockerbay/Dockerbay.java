@@ -5,8 +5,28 @@ package com.github.pavradev.dockerbay;
  */
 public class Dockerbay {
 
+    /**
+     * Set to false to keep the resources of dead sessions, see ResourceReaper
+     */
+    public static final String REAPER_PROPERTY = "dockerbay.reaper";
+
+    private static ResourceReaper resourceReaper;
+
     public static DockerRule.DockerRuleBuilder getDockerRuleBuilder() {
+        DockerClientImpl dockerClient = new DockerClientImpl();
+        startResourceReaper(dockerClient);
         return DockerRule.builder()
-                .withEnvironmentFactory(EnvironmentFactory.withDockerClientWrapper(new DockerClientImpl()));
+                .withEnvironmentFactory(EnvironmentFactory.withDockerClientWrapper(dockerClient));
+    }
+
+    /**
+     * One reaper per JVM, whatever the number of rules
+     */
+    private static synchronized void startResourceReaper(DockerClientWrapper dockerClient) {
+        if (resourceReaper == null && !"false".equalsIgnoreCase(System.getProperty(REAPER_PROPERTY))) {
+            resourceReaper = ResourceReaper.builder()
+                    .withDockerClientWrapper(dockerClient)
+                    .build();
+        }
     }
-}
\ No newline at end of file
+}